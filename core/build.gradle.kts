@@ -10,6 +10,13 @@ repositories {
 dependencies {
     implementation("org.reflections:reflections:0.10.2")
 //    compileOnly(project(":mongo-repository"))
+
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.shadowJar {
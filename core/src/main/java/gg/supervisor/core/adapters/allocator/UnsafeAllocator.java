@@ -3,7 +3,6 @@ package gg.supervisor.core.adapters.allocator;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 
 /**
  * UnsafeAllocator provides a mechanism to create instances of classes without calling their constructors.
@@ -22,27 +21,37 @@ public abstract class UnsafeAllocator {
      */
     public abstract <T> T newInstance(Class<T> c) throws Exception;
 
+    // Stateless, so a single instance is shared by every caller
+    private static volatile UnsafeAllocator instance;
+
     /**
-     * Factory method to create an instance of UnsafeAllocator using {@code Unsafe.allocateInstance()}.
+     * Factory method to obtain an instance of UnsafeAllocator using {@code Unsafe.allocateInstance()}.
+     * The allocator is created once and shared; {@code allocateInstance} is called directly rather than
+     * through reflection, so allocating an instance costs no more than the native call itself.
      *
      * @return An instance of {@code UnsafeAllocator}.
      * @throws UnsupportedOperationException if the {@code Unsafe} instance could not be accessed or if instantiation fails.
      */
     public static UnsafeAllocator create() {
+        UnsafeAllocator allocator = instance;
+        if (allocator != null) {
+            return allocator;
+        }
+
         try {
             // Attempt to get an instance of Unsafe
             final Unsafe unsafe = getUnsafe();
-            // Use reflection to access the allocateInstance method of Unsafe
-            final Method allocateInstance = Unsafe.class.getMethod("allocateInstance", Class.class);
 
             // Return a new instance of UnsafeAllocator, utilizing Unsafe's allocateInstance method
-            return new UnsafeAllocator() {
+            allocator = new UnsafeAllocator() {
                 @SuppressWarnings("unchecked")
                 @Override
                 public <T> T newInstance(Class<T> c) throws Exception {
-                    return (T) allocateInstance.invoke(unsafe, c);
+                    return (T) unsafe.allocateInstance(c);
                 }
             };
+            instance = allocator;
+            return allocator;
         } catch (Exception ignored) {
             // Ignoring exception to throw a more generic UnsupportedOperationException later
         }
@@ -6,14 +6,26 @@ import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import gg.supervisor.core.adapters.allocator.UnsafeAllocator;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A custom TypeAdapterFactory that supports creating TypeAdapters for a variety of classes.
@@ -21,12 +33,26 @@ import java.util.Map;
  * including classes with fields that are inaccessible by default.
  *
  * It relies on the use of {@link UnsafeAllocator} to instantiate classes without calling constructors,
- * making it versatile for serialization and deserialization of complex types.
+ * making it versatile for serialization and deserialization of complex types. Records are created
+ * through their canonical constructor instead.
+ *
+ * <p>The field layout of a class is resolved once and bound to {@link MethodHandle}s, and the adapter
+ * of every field is looked up once when the adapter is created. Gson caches the adapter per type, so
+ * reading and writing an entity does no reflection and no adapter lookups for fields whose value has the
+ * declared type.</p>
  */
 public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
 
+    // Field layouts do not depend on the Gson instance, so they are shared by every factory
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return new ClassLayout(type);
+        }
+    };
+
     // A map to hold custom adapters for specific classes
-    private final Map<Class<?>, TypeAdapter<?>> customAdapters = new HashMap<>();
+    private final Map<Class<?>, TypeAdapter<?>> customAdapters = new ConcurrentHashMap<>();
 
     /**
      * Creates a new TypeAdapter for the given type if possible. This will use the GeneralTypeAdapter
@@ -37,6 +63,7 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
      * @param <T>       The type of the object.
      * @return A TypeAdapter for the given type, or null if none could be created.
      */
+    @SuppressWarnings("unchecked")
     @Override
     public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
         Class<?> rawType = typeToken.getRawType();
@@ -48,12 +75,13 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
         }
 
         // Skip Gson's default handling for interfaces, Object, and core Java classes
-        if (rawType.isInterface() || rawType.equals(Object.class) || rawType.getPackage().getName().startsWith("java.")) {
+        if (rawType.isInterface() || rawType.isPrimitive() || rawType.isArray() || rawType.equals(Object.class)
+                || rawType.getPackage() == null || rawType.getPackage().getName().startsWith("java.")) {
             return null;
         }
 
-        // Create a GeneralTypeAdapter to handle the given type
-        return new GeneralTypeAdapter<>(gson, typeToken);
+        // Create a GeneralTypeAdapter to handle the given type; Gson caches it per type token
+        return new GeneralTypeAdapter<>(gson, LAYOUTS.get(rawType));
     }
 
     /**
@@ -67,6 +95,113 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
         customAdapters.put(type, adapter);
     }
 
+    /**
+     * The fields of a class together with the handles used to read and write them and to create instances.
+     */
+    private static final class ClassLayout {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+        private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+        private final Class<?> type;
+        private final BoundField[] fields;
+        private final Map<String, Integer> indexByName = new HashMap<>();
+
+        // Canonical constructor for records, null for classes created through the allocator
+        private final MethodHandle recordConstructor;
+
+        private ClassLayout(Class<?> type) {
+            this.type = type;
+
+            try {
+                MethodHandles.Lookup lookup = lookupFor(type);
+                List<BoundField> bound = new ArrayList<>();
+
+                if (type.isRecord()) {
+                    RecordComponent[] components = type.getRecordComponents();
+                    Class<?>[] parameterTypes = new Class<?>[components.length];
+                    for (RecordComponent component : components) {
+                        parameterTypes[bound.size()] = component.getType();
+                        component.getAccessor().trySetAccessible();
+                        MethodHandle getter = lookup.unreflect(component.getAccessor()).asType(GETTER_TYPE);
+                        bound.add(new BoundField(component.getName(), component.getGenericType(), component.getType(), getter, null));
+                    }
+
+                    Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+                    constructor.trySetAccessible();
+                    this.recordConstructor = lookup.unreflectConstructor(constructor)
+                            .asSpreader(Object[].class, parameterTypes.length)
+                            .asType(CONSTRUCTOR_TYPE);
+                } else {
+                    // Superclass fields first; a field shadowed by a subclass is written once, by the subclass
+                    List<Class<?>> hierarchy = new ArrayList<>();
+                    for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                        hierarchy.add(0, current);
+                    }
+
+                    Map<String, Integer> positions = new HashMap<>();
+                    for (Class<?> declaring : hierarchy) {
+                        MethodHandles.Lookup declaringLookup = declaring == type ? lookup : lookupFor(declaring);
+                        for (Field field : declaring.getDeclaredFields()) {
+                            // Static state is not part of an instance, synthetic fields belong to the compiler
+                            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                                continue;
+                            }
+                            field.trySetAccessible(); // Allow access to private and final fields
+                            MethodHandle getter = declaringLookup.unreflectGetter(field).asType(GETTER_TYPE);
+                            MethodHandle setter = declaringLookup.unreflectSetter(field).asType(SETTER_TYPE);
+                            BoundField boundField = new BoundField(field.getName(), field.getGenericType(), field.getType(), getter, setter);
+
+                            Integer position = positions.putIfAbsent(field.getName(), bound.size());
+                            if (position != null) {
+                                bound.set(position, boundField);
+                            } else {
+                                bound.add(boundField);
+                            }
+                        }
+                    }
+                    this.recordConstructor = null;
+                }
+
+                this.fields = bound.toArray(new BoundField[0]);
+                for (int i = 0; i < fields.length; i++) {
+                    indexByName.put(fields[i].name, i);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new JsonIOException("Failed to bind fields of " + type.getName(), e);
+            }
+        }
+
+        private static MethodHandles.Lookup lookupFor(Class<?> type) {
+            try {
+                return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            } catch (IllegalAccessException e) {
+                // The module does not open the type; accessible members are still reachable with this lookup
+                return MethodHandles.lookup();
+            }
+        }
+    }
+
+    private static final class BoundField {
+        private final String name;
+        private final Type genericType;
+        private final Class<?> rawType;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        // Value a record component takes when it is missing from the JSON
+        private final Object defaultValue;
+
+        private BoundField(String name, Type genericType, Class<?> rawType, MethodHandle getter, MethodHandle setter) {
+            this.name = name;
+            this.genericType = genericType;
+            this.rawType = rawType;
+            this.getter = getter;
+            this.setter = setter;
+            this.defaultValue = rawType.isPrimitive() ? Array.get(Array.newInstance(rawType, 1), 0) : null;
+        }
+    }
+
     /**
      * A general-purpose TypeAdapter for serializing and deserializing objects of various classes.
      * This adapter uses UnsafeAllocator to instantiate objects without requiring constructors.
@@ -75,27 +210,26 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
      */
     private static class GeneralTypeAdapter<T> extends TypeAdapter<T> {
         private final Gson gson;
-        private final Class<T> type;
-        private final Map<String, Field> fieldMap = new HashMap<>(); // A map to hold fields by name for quick lookup
+        private final ClassLayout layout;
         private final UnsafeAllocator allocator;
 
+        // Adapter of every field for its declared type, resolved once when the adapter is created
+        private final TypeAdapter<?>[] fieldAdapters;
+
         /**
          * Constructs a GeneralTypeAdapter that can serialize and deserialize instances of the given type.
          *
-         * @param gson      The Gson instance used for serialization.
-         * @param typeToken The TypeToken representing the type to be handled.
+         * @param gson   The Gson instance used for serialization.
+         * @param layout The resolved fields of the type to be handled.
          */
-        public GeneralTypeAdapter(Gson gson, TypeToken<T> typeToken) {
+        private GeneralTypeAdapter(Gson gson, ClassLayout layout) {
             this.gson = gson;
-            this.type = (Class<T>) typeToken.getRawType();
-            this.allocator = UnsafeAllocator.create();
-
-            // Cache all declared fields, making them accessible for future use
-            for (Field field : type.getDeclaredFields()) {
-                if (!field.isAccessible()) {
-                    field.setAccessible(true); // Allow reflective access to private fields
-                }
-                fieldMap.put(field.getName(), field); // Store fields in a map for quick lookup by name
+            this.layout = layout;
+            this.allocator = layout.recordConstructor == null ? UnsafeAllocator.create() : null;
+            this.fieldAdapters = new TypeAdapter<?>[layout.fields.length];
+            for (int i = 0; i < fieldAdapters.length; i++) {
+                // Self-referencing types are safe here, Gson hands out a placeholder while this adapter is built
+                fieldAdapters[i] = gson.getAdapter(TypeToken.get(layout.fields[i].genericType));
             }
         }
 
@@ -106,17 +240,38 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
          * @param value The object to be serialized.
          * @throws IOException if an I/O error occurs during writing.
          */
+        @SuppressWarnings({"unchecked", "rawtypes"})
         @Override
         public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            BoundField[] fields = layout.fields;
             out.beginObject();
-            for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
+            for (int i = 0; i < fields.length; i++) {
+                BoundField field = fields[i];
+                Object fieldValue;
                 try {
-                    Object fieldValue = entry.getValue().get(value); // Retrieve field value using reflection
-                    out.name(entry.getKey()); // Write the field name to JSON
-                    gson.toJson(fieldValue, fieldValue != null ? fieldValue.getClass() : Object.class, out); // Write field value to JSON
-                } catch (IllegalAccessException e) {
-                    throw new JsonIOException(e); // Wrap the exception in a JsonIOException for consistency with Gson
+                    fieldValue = (Object) field.getter.invokeExact((Object) value);
+                } catch (Throwable t) {
+                    throw new JsonIOException("Failed to read field " + field.name + " of " + layout.type.getName(), t);
+                }
+
+                out.name(field.name); // Write the field name to JSON
+                if (fieldValue == null) {
+                    out.nullValue();
+                    continue;
                 }
+
+                // Subclasses stored in a field of a wider type are written with their own adapter,
+                // parameterized fields keep the declared adapter so element types are not lost
+                TypeAdapter adapter = fieldValue.getClass() == field.rawType || field.rawType.isPrimitive()
+                        || field.genericType instanceof ParameterizedType
+                        ? fieldAdapters[i]
+                        : gson.getAdapter(fieldValue.getClass());
+                adapter.write(out, fieldValue);
             }
             out.endObject();
         }
@@ -128,35 +283,79 @@ public class GeneralTypeAdapterFactory implements TypeAdapterFactory {
          * @return An instance of the type with fields populated from the JSON input.
          * @throws IOException if an I/O error occurs during reading.
          */
+        @SuppressWarnings("unchecked")
         @Override
         public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            return layout.recordConstructor != null ? readRecord(in) : readObject(in);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T readObject(JsonReader in) throws IOException {
             T instance;
             try {
                 // Create a new instance using UnsafeAllocator to bypass constructors
-                instance = allocator.newInstance(type);
+                instance = (T) allocator.newInstance(layout.type);
             } catch (Exception e) {
-                throw new JsonIOException("Failed to create instance of " + type, e);
+                throw new JsonIOException("Failed to create instance of " + layout.type, e);
             }
 
             in.beginObject();
             while (in.hasNext()) {
-                String name = in.nextName();
-                Field field = fieldMap.get(name); // Find the field by name
-                if (field != null) {
-                    Type fieldType = field.getGenericType();
-                    Object fieldValue = gson.fromJson(in, fieldType); // Deserialize the field value
-                    try {
-                        field.set(instance, fieldValue); // Set the field value using reflection
-                    } catch (IllegalAccessException e) {
-                        throw new JsonIOException(e); // Wrap the exception in a JsonIOException for consistency with Gson
-                    }
-                } else {
+                Integer index = layout.indexByName.get(in.nextName()); // Find the field by name
+                if (index == null) {
                     // Skip any unknown fields to allow for flexible deserialization
                     in.skipValue();
+                    continue;
+                }
+
+                BoundField field = layout.fields[index];
+                Object fieldValue = fieldAdapters[index].read(in);
+                if (fieldValue == null && field.rawType.isPrimitive()) {
+                    continue; // Keep the default rather than failing on a null primitive
+                }
+                try {
+                    field.setter.invokeExact((Object) instance, fieldValue);
+                } catch (Throwable t) {
+                    throw new JsonIOException("Failed to set field " + field.name + " of " + layout.type.getName(), t);
                 }
             }
             in.endObject();
             return instance;
         }
+
+        @SuppressWarnings("unchecked")
+        private T readRecord(JsonReader in) throws IOException {
+            BoundField[] fields = layout.fields;
+            Object[] arguments = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                arguments[i] = fields[i].defaultValue;
+            }
+
+            in.beginObject();
+            while (in.hasNext()) {
+                Integer index = layout.indexByName.get(in.nextName());
+                if (index == null) {
+                    in.skipValue();
+                    continue;
+                }
+
+                Object fieldValue = fieldAdapters[index].read(in);
+                if (fieldValue != null || !fields[index].rawType.isPrimitive()) {
+                    arguments[index] = fieldValue;
+                }
+            }
+            in.endObject();
+
+            try {
+                return (T) (Object) layout.recordConstructor.invokeExact(arguments);
+            } catch (Throwable t) {
+                throw new JsonIOException("Failed to create record " + layout.type.getName(), t);
+            }
+        }
     }
 }
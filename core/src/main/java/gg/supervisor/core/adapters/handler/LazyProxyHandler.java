@@ -0,0 +1,96 @@
+package gg.supervisor.core.adapters.handler;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link ProxyHandler} that stands in for an instance which has not been created yet.
+ *
+ * <p>The real instance is built by the supplied factory on the first method call (other than
+ * {@code equals}, {@code hashCode} and {@code toString}) and every call after that is delegated to it.
+ * Creation uses double-checked locking, so concurrent first calls build the instance exactly once.
+ * If the factory fails, the failure is rethrown to the caller and the next call tries again.</p>
+ *
+ * @param <T> The interface implemented by the proxy.
+ */
+public class LazyProxyHandler<T> implements ProxyHandler<T> {
+
+    private final Class<T> serviceInterface;
+    private final Callable<? extends T> factory;
+
+    private volatile T delegate;
+
+    public LazyProxyHandler(Class<T> serviceInterface, Callable<? extends T> factory) {
+        this.serviceInterface = serviceInterface;
+        this.factory = factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T getInstance() {
+        return (T) Proxy.newProxyInstance(
+                serviceInterface.getClassLoader(),
+                new Class<?>[]{serviceInterface},
+                this
+        );
+    }
+
+    /**
+     * @return {@code true} once the real instance has been created.
+     */
+    public boolean isInitialized() {
+        return delegate != null;
+    }
+
+    /**
+     * Returns the real instance, creating it if this is the first access.
+     *
+     * @return The real instance.
+     * @throws IllegalStateException if the factory fails to create the instance.
+     */
+    public T getDelegate() {
+        T instance = delegate;
+        if (instance != null) {
+            return instance;
+        }
+
+        synchronized (this) {
+            instance = delegate;
+            if (instance == null) {
+                try {
+                    instance = factory.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to initialize lazy " + serviceInterface.getName(), e);
+                }
+                if (instance == null) {
+                    throw new IllegalStateException("Lazy factory for " + serviceInterface.getName() + " returned null");
+                }
+                delegate = instance;
+            }
+            return instance;
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // Identity methods must not force initialization, e.g. when the proxy is put into a map
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return isInitialized() ? delegate.toString() : "Lazy[" + serviceInterface.getName() + "]";
+            }
+        }
+
+        try {
+            return method.invoke(getDelegate(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package gg.supervisor.core.adapters.types.item;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * The {@code ItemStackCodec} converts items to and from bytes using Paper's native item serialization
+ * ({@link ItemStack#serializeAsBytes()}), which writes the item's NBT instead of running it through
+ * Java object serialization. The output is several times smaller and faster to produce than the
+ * {@code BukkitObjectOutputStream} format.
+ *
+ * <p><strong>Formats:</strong></p>
+ * <ul>
+ *     <li><strong>Single item:</strong> the bytes returned by Paper, an empty array for {@code null} and a
+ *     single zero byte for air and items with no amount, which Paper cannot serialize. Air decodes as an
+ *     air item, so non-null item fields stay non-null.</li>
+ *     <li><strong>Item array:</strong> a four byte header, the number of slots and then every slot as a
+ *     length-prefixed item in the single item format. {@code null} slots take four bytes.</li>
+ * </ul>
+ *
+ * <p>Every decode method also accepts data written by {@code BukkitObjectOutputStream}, recognized by the
+ * Java serialization stream header, so values stored by earlier versions are migrated transparently the
+ * next time they are saved. On servers without Paper's API the codec falls back to the legacy format.</p>
+ *
+ * <p>Encoding reuses a per-thread buffer, so batch encoding an inventory allocates little besides the
+ * result itself.</p>
+ */
+public final class ItemStackCodec {
+
+    // Header of the array format: "SIA" followed by the format version
+    private static final byte[] ARRAY_HEADER = {'S', 'I', 'A', 1};
+
+    // First two bytes of every Java serialization stream, i.e. data written by BukkitObjectOutputStream
+    private static final int LEGACY_MAGIC = 0xACED;
+
+    // Buffers that grew beyond this while encoding a large batch are dropped instead of retained
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // Neither Paper's NBT nor a Java serialization stream is a single byte, so this never clashes with an item
+    private static final byte[] AIR = {0};
+
+    private static final boolean NATIVE_SUPPORTED = isNativeSupported();
+
+    private static final ThreadLocal<ReusableBuffer> BUFFERS = ThreadLocal.withInitial(ReusableBuffer::new);
+
+    private ItemStackCodec() {
+    }
+
+    /**
+     * @return {@code true} if the server provides Paper's native item serialization.
+     */
+    public static boolean isNative() {
+        return NATIVE_SUPPORTED;
+    }
+
+    /**
+     * Encodes a single item.
+     *
+     * @param item The item, may be {@code null}.
+     * @return The encoded item, empty for {@code null}.
+     */
+    public static byte[] encode(ItemStack item) {
+        if (item == null) {
+            return EMPTY;
+        }
+        if (isEmpty(item)) {
+            return AIR.clone();
+        }
+        if (NATIVE_SUPPORTED) {
+            return item.serializeAsBytes();
+        }
+
+        ReusableBuffer buffer = BUFFERS.get();
+        try (BukkitObjectOutputStream output = new BukkitObjectOutputStream(buffer.begin())) {
+            output.writeObject(item);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to save item stack.", e);
+        }
+        return buffer.release();
+    }
+
+    /**
+     * Decodes a single item written by {@link #encode(ItemStack)} or by {@code BukkitObjectOutputStream}.
+     *
+     * @param data The encoded item.
+     * @return The item, or {@code null} if the data is empty.
+     * @throws IOException if the data cannot be decoded.
+     */
+    public static ItemStack decode(byte[] data) throws IOException {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (data.length == 1 && data[0] == AIR[0]) {
+            return new ItemStack(Material.AIR);
+        }
+        if (isLegacy(data)) {
+            try (BukkitObjectInputStream input = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+                return (ItemStack) input.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to decode class type.", e);
+            }
+        }
+        return ItemStack.deserializeBytes(data);
+    }
+
+    /**
+     * Encodes an array of items, keeping empty slots in place.
+     *
+     * @param items The items, elements may be {@code null}.
+     * @return The encoded array.
+     */
+    public static byte[] encodeAll(ItemStack[] items) {
+        ReusableBuffer buffer = BUFFERS.get();
+
+        if (!NATIVE_SUPPORTED) {
+            try (BukkitObjectOutputStream output = new BukkitObjectOutputStream(buffer.begin())) {
+                output.writeInt(items.length);
+                for (ItemStack item : items) {
+                    output.writeObject(item);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to save item stacks.", e);
+            }
+            return buffer.release();
+        }
+
+        try {
+            DataOutputStream output = new DataOutputStream(buffer.begin());
+            output.write(ARRAY_HEADER);
+            output.writeInt(items.length);
+            for (ItemStack item : items) {
+                byte[] bytes = item == null ? EMPTY : isEmpty(item) ? AIR : item.serializeAsBytes();
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to save item stacks.", e);
+        }
+        return buffer.release();
+    }
+
+    /**
+     * Decodes an array written by {@link #encodeAll(ItemStack[])} or by {@code BukkitObjectOutputStream}
+     * (an {@code int} length followed by the items).
+     *
+     * @param data The encoded array.
+     * @return The items, empty slots are {@code null}.
+     * @throws IOException if the data cannot be decoded.
+     */
+    public static ItemStack[] decodeAll(byte[] data) throws IOException {
+        if (isLegacy(data)) {
+            try (BukkitObjectInputStream input = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+                ItemStack[] items = new ItemStack[input.readInt()];
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = (ItemStack) input.readObject();
+                }
+                return items;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to decode class type.", e);
+            }
+        }
+
+        if (data.length < ARRAY_HEADER.length + 4 || data[0] != ARRAY_HEADER[0] || data[1] != ARRAY_HEADER[1]
+                || data[2] != ARRAY_HEADER[2]) {
+            throw new IOException("Not an encoded item array");
+        }
+        if (data[3] != ARRAY_HEADER[3]) {
+            throw new IOException("Unsupported item array version " + data[3]);
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, ARRAY_HEADER.length, data.length - ARRAY_HEADER.length));
+        ItemStack[] items = new ItemStack[input.readInt()];
+        for (int i = 0; i < items.length; i++) {
+            int length = input.readInt();
+            if (length > 0) {
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                items[i] = decode(bytes);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Encodes a single item as Base64, for storing it in text formats such as JSON.
+     *
+     * @param item The item, may be {@code null}.
+     * @return The Base64 encoded item, empty for {@code null}.
+     */
+    public static String encodeToString(ItemStack item) {
+        return Base64.getEncoder().encodeToString(encode(item));
+    }
+
+    /**
+     * Decodes a Base64 item written by {@link #encodeToString(ItemStack)} or by the legacy Base64 format.
+     *
+     * @param data The Base64 encoded item.
+     * @return The item, or {@code null} if the data is empty.
+     * @throws IOException if the data cannot be decoded.
+     */
+    public static ItemStack decodeFromString(String data) throws IOException {
+        return decode(decodeBase64(data));
+    }
+
+    /**
+     * Encodes an array of items as Base64.
+     *
+     * @param items The items, elements may be {@code null}.
+     * @return The Base64 encoded array.
+     */
+    public static String encodeAllToString(ItemStack[] items) {
+        return Base64.getEncoder().encodeToString(encodeAll(items));
+    }
+
+    /**
+     * Decodes a Base64 array written by {@link #encodeAllToString(ItemStack[])} or by the legacy Base64 format.
+     *
+     * @param data The Base64 encoded array.
+     * @return The items, empty slots are {@code null}.
+     * @throws IOException if the data cannot be decoded.
+     */
+    public static ItemStack[] decodeAllFromString(String data) throws IOException {
+        return decodeAll(decodeBase64(data));
+    }
+
+    private static byte[] decodeBase64(String data) throws IOException {
+        try {
+            // The MIME decoder also accepts the line breaks written by the legacy Base64Coder.encodeLines
+            return Base64.getMimeDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid Base64 item data", e);
+        }
+    }
+
+    private static boolean isLegacy(byte[] data) {
+        return data.length >= 2 && ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) == LEGACY_MAGIC;
+    }
+
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType().isAir() || item.getAmount() <= 0;
+    }
+
+    private static boolean isNativeSupported() {
+        try {
+            ItemStack.class.getMethod("serializeAsBytes");
+            ItemStack.class.getMethod("deserializeBytes", byte[].class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that is reused by one thread for every encode call.
+     */
+    private static final class ReusableBuffer extends ByteArrayOutputStream {
+
+        private ReusableBuffer() {
+            super(4096);
+        }
+
+        private ReusableBuffer begin() {
+            reset();
+            return this;
+        }
+
+        private byte[] release() {
+            byte[] result = toByteArray();
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                BUFFERS.remove();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package gg.supervisor.core.adapters.types.world;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import gg.supervisor.core.annotation.Adapter;
+import gg.supervisor.core.world.BlockReference;
+import gg.supervisor.core.world.WorldReference;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link BlockReference} in the same format as {@link BlockTypeAdapter}, so a stored
+ * {@code Block} field can be changed to a reference without migrating data. Reading never looks up the world.
+ */
+@Adapter
+public class BlockReferenceTypeAdapter extends TypeAdapter<BlockReference> {
+
+    @Override
+    public void write(JsonWriter out, BlockReference block) throws IOException {
+        if (block == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("world").value(block.getWorld().getName());
+        out.name("x").value(block.getX());
+        out.name("y").value(block.getY());
+        out.name("z").value(block.getZ());
+        out.endObject();
+    }
+
+    @Override
+    public BlockReference read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        in.beginObject();
+        String worldName = null;
+        int x = 0, y = 0, z = 0;
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "world":
+                    worldName = in.nextString();
+                    break;
+                case "x":
+                    x = in.nextInt();
+                    break;
+                case "y":
+                    y = in.nextInt();
+                    break;
+                case "z":
+                    z = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        if (worldName == null) {
+            throw new JsonParseException("Block's world name is missing in the JSON data");
+        }
+        return new BlockReference(WorldReference.of(worldName), x, y, z);
+    }
+}
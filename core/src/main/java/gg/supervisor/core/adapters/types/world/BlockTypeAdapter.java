@@ -5,7 +5,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import gg.supervisor.core.annotation.Adapter;
-import org.bukkit.Bukkit;
+import gg.supervisor.core.world.WorldReference;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 
@@ -58,9 +58,14 @@ public class BlockTypeAdapter extends TypeAdapter<Block> {
         }
         in.endObject();
 
-        World world = Bukkit.getWorld(worldName);
+        if (worldName == null) {
+            throw new JsonParseException("Block's world name is missing in the JSON data");
+        }
+
+        // Cached per world name, so repeated values do not look the world up again
+        World world = WorldReference.of(worldName).resolve();
         if (world == null) {
-            throw new JsonParseException("Unknown world: " + worldName);
+            throw new JsonParseException("Unknown world: " + worldName + " (store a BlockReference to read it before the world loads)");
         }
         return world.getBlockAt(x, y, z);
     }
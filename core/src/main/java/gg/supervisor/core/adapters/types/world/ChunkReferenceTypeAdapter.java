@@ -0,0 +1,69 @@
+package gg.supervisor.core.adapters.types.world;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import gg.supervisor.core.annotation.Adapter;
+import gg.supervisor.core.world.ChunkReference;
+import gg.supervisor.core.world.WorldReference;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link ChunkReference} in the same format as {@link ChunkTypeAdapter}, so a stored
+ * {@code Chunk} field can be changed to a reference without migrating data. Reading never loads the chunk.
+ */
+@Adapter
+public class ChunkReferenceTypeAdapter extends TypeAdapter<ChunkReference> {
+
+    @Override
+    public void write(JsonWriter out, ChunkReference chunk) throws IOException {
+        if (chunk == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("world").value(chunk.getWorld().getName());
+        out.name("x").value(chunk.getX());
+        out.name("z").value(chunk.getZ());
+        out.endObject();
+    }
+
+    @Override
+    public ChunkReference read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        in.beginObject();
+        String worldName = null;
+        int x = 0, z = 0;
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "world":
+                    worldName = in.nextString();
+                    break;
+                case "x":
+                    x = in.nextInt();
+                    break;
+                case "z":
+                    z = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        if (worldName == null) {
+            throw new JsonParseException("Chunk's world name is missing in the JSON data");
+        }
+        return new ChunkReference(WorldReference.of(worldName), x, z);
+    }
+}
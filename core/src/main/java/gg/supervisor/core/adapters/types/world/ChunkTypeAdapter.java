@@ -5,7 +5,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import gg.supervisor.core.annotation.Adapter;
-import org.bukkit.Bukkit;
+import gg.supervisor.core.world.WorldReference;
 import org.bukkit.Chunk;
 import org.bukkit.World;
 
@@ -54,9 +54,14 @@ public class ChunkTypeAdapter extends TypeAdapter<Chunk> {
         }
         in.endObject();
 
-        World world = Bukkit.getWorld(worldName);
+        if (worldName == null) {
+            throw new JsonParseException("Chunk's world name is missing in the JSON data");
+        }
+
+        // Cached per world name, so repeated values do not look the world up again
+        World world = WorldReference.of(worldName).resolve();
         if (world == null) {
-            throw new JsonParseException("Unknown world: " + worldName);
+            throw new JsonParseException("Unknown world: " + worldName + " (store a ChunkReference to read it before the world loads)");
         }
         return world.getChunkAt(x, z);
     }
@@ -0,0 +1,84 @@
+package gg.supervisor.core.adapters.types.world;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import gg.supervisor.core.annotation.Adapter;
+import gg.supervisor.core.world.LocationReference;
+import gg.supervisor.core.world.WorldReference;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link LocationReference} in the same format as {@link LocationTypeAdapter}, so a stored
+ * {@code Location} field can be changed to a reference without migrating data. Reading succeeds even if
+ * the world is not loaded.
+ */
+@Adapter
+public class LocationReferenceTypeAdapter extends TypeAdapter<LocationReference> {
+
+    @Override
+    public void write(JsonWriter out, LocationReference location) throws IOException {
+        if (location == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("world").value(location.getWorld().getName());
+        out.name("x").value(location.getX());
+        out.name("y").value(location.getY());
+        out.name("z").value(location.getZ());
+        out.name("yaw").value(location.getYaw());
+        out.name("pitch").value(location.getPitch());
+        out.endObject();
+    }
+
+    @Override
+    public LocationReference read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String worldName = null;
+        double x = 0, y = 0, z = 0;
+        float yaw = 0, pitch = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "world":
+                    worldName = in.nextString();
+                    break;
+                case "x":
+                    x = in.nextDouble();
+                    break;
+                case "y":
+                    y = in.nextDouble();
+                    break;
+                case "z":
+                    z = in.nextDouble();
+                    break;
+                case "yaw":
+                    yaw = (float) in.nextDouble();
+                    break;
+                case "pitch":
+                    pitch = (float) in.nextDouble();
+                    break;
+                default:
+                    // Skip any unexpected properties in the JSON
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        if (worldName == null) {
+            throw new JsonParseException("Location's world name is missing in the JSON data");
+        }
+        return new LocationReference(WorldReference.of(worldName), x, y, z, yaw, pitch);
+    }
+}
@@ -5,7 +5,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import gg.supervisor.core.annotation.Adapter;
-import org.bukkit.Bukkit;
+import gg.supervisor.core.world.WorldReference;
 import org.bukkit.Location;
 import org.bukkit.World;
 
@@ -76,9 +76,10 @@ public class LocationTypeAdapter extends TypeAdapter<Location> {
             throw new JsonParseException("Location's world name is missing in the JSON data");
         }
 
-        World world = Bukkit.getWorld(worldName);
+        // Cached per world name, so repeated values do not look the world up again
+        World world = WorldReference.of(worldName).resolve();
         if (world == null) {
-            throw new JsonParseException("Unknown world: " + worldName);
+            throw new JsonParseException("Unknown world: " + worldName + " (store a LocationReference to read it before the world loads)");
         }
 
         return new Location(world, x, y, z, yaw, pitch);
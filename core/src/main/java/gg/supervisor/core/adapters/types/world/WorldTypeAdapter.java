@@ -5,7 +5,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import gg.supervisor.core.annotation.Adapter;
-import org.bukkit.Bukkit;
+import gg.supervisor.core.world.WorldReference;
 import org.bukkit.World;
 
 import java.io.IOException;
@@ -42,7 +42,8 @@ public class WorldTypeAdapter extends TypeAdapter<World> {
         }
         in.endObject();
 
-        World world = Bukkit.getWorld(worldName);
+        // Cached per world name, so repeated values do not look the world up again
+        World world = worldName != null ? WorldReference.of(worldName).resolve() : null;
         if (world == null) {
             throw new JsonParseException("Unknown world: " + worldName);
         }
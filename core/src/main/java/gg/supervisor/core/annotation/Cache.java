@@ -0,0 +1,47 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Cache} annotation sizes the in-memory cache of a player repository
+ * ({@code JsonPlayerRepository} or {@code MongoPlayerRepository}).
+ *
+ * <p>Player stores cache the profiles they load. Without this annotation the cache keeps at most
+ * {@value #DEFAULT_MAXIMUM_SIZE} profiles and drops profiles that were not used for
+ * {@value #DEFAULT_EXPIRE_AFTER_ACCESS_SECONDS} seconds. When it is full, profiles that are used often are
+ * kept over profiles that were only looked up once, for example by a leaderboard scan. Profiles of online
+ * players are pinned and never dropped. A dropped profile is simply loaded again on its next use.</p>
+ *
+ * <p>A negative {@link #maximumSize()} keeps every loaded profile, which was the behaviour before caches
+ * were bounded. A {@code maximumSize} of {@code 0} caches only the pinned profiles of online players; every
+ * other lookup reads storage.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * &#64;Component
+ * &#64;Cache(maximumSize = 2_000, expireAfterAccessSeconds = 600)
+ * public interface ProfileRepository extends JsonPlayerRepository&lt;Profile&gt; {
+ * }
+ * </pre>
+ *
+ * @see gg.supervisor.core.repository.cache.EntityCache
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cache {
+
+    long DEFAULT_MAXIMUM_SIZE = 10_000;
+    long DEFAULT_EXPIRE_AFTER_ACCESS_SECONDS = 1_800;
+
+    /**
+     * @return The maximum number of unpinned entries, {@code 0} to cache only pinned entries, or a negative number
+     * for no limit.
+     */
+    long maximumSize() default DEFAULT_MAXIMUM_SIZE;
+
+    /**
+     * @return The time an unpinned entry may go unused before it is dropped, or {@code 0} to never expire entries.
+     * Must not be negative.
+     */
+    long expireAfterAccessSeconds() default DEFAULT_EXPIRE_AFTER_ACCESS_SECONDS;
+}
@@ -0,0 +1,30 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Expires} annotation marks a {@code long} field of a Mongo entity holding a time in epoch
+ * milliseconds, after which the entity is deleted, such as the end of a temporary ban.
+ *
+ * <p>Mongo stores store the field as a BSON date and create a TTL index on it when they start. MongoDB
+ * then deletes each entity {@link #afterSeconds()} after the time in the field, checking about once a
+ * minute. The field reads back as epoch milliseconds. Derived queries compare the field with numbers and
+ * therefore never match it in MongoDB. Other stores ignore the annotation.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * public class Ban {
+ *     &#64;Expires
+ *     private long expiresAt;
+ * }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Expires {
+
+    /**
+     * @return The number of seconds to keep the entity after the time in the field.
+     */
+    long afterSeconds() default 0;
+}
@@ -0,0 +1,33 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Indexed} annotation marks a field of a Mongo entity that repositories look entities up by,
+ * such as a player name.
+ *
+ * <p>Mongo stores create an index on the field when they start, so queries like {@code findByName} read
+ * the index instead of scanning the collection. Creating an index that already exists does nothing. Other
+ * stores ignore the annotation. Only fields of the entity class itself are indexed, not fields of embedded
+ * objects.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * public class Clan {
+ *     &#64;Indexed
+ *     private String leader;
+ * }
+ * </pre>
+ *
+ * @see Unique
+ * @see Expires
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Indexed {
+
+    /**
+     * @return {@code true} to sort the index in descending order, e.g. for top lists.
+     */
+    boolean descending() default false;
+}
@@ -0,0 +1,33 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Lazy} annotation defers the construction of a component until it is actually used,
+ * instead of building it while the plugin is enabling.
+ *
+ * <p>For repositories, the framework registers a lightweight proxy in place of the real repository.
+ * The backing store (and any connection it opens, such as a {@code MongoClient}) is only created the
+ * first time a repository method is called. Initialization is thread-safe: concurrent first calls
+ * build the repository exactly once. Player repositories keep their profile listener registered
+ * from the start, so the first login initializes them.</p>
+ *
+ * <p>Component classes cannot be proxied, so a lazy component is simply skipped during startup and
+ * created the first time it is requested, either through {@code Services.loadIfPresent} or by an
+ * eagerly created component that depends on it. Components implementing {@code Listener} are always
+ * created eagerly, as they would otherwise never receive events.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * &#64;Lazy
+ * &#64;Component
+ * public interface AuditRepository extends MongoRepository&lt;AuditEntry&gt; {
+ * }
+ * </pre>
+ *
+ * @see Component
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy {
+}
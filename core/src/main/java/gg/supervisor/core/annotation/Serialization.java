@@ -0,0 +1,42 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Serialization} annotation selects how a repository's entities are written to its store.
+ *
+ * <p>Repositories persist through the compact profile by default: no indentation or line breaks, which
+ * keeps JSON files, Mongo payloads and item data small and avoids building whitespace on every save.
+ * Repositories whose files are meant to be read or edited by hand can opt into the pretty profile.
+ * Both profiles share the same type adapters, so either one reads data written by the other.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * &#64;Component
+ * &#64;Serialization(Serialization.Profile.PRETTY)
+ * public interface WarpRepository extends JsonRepository&lt;Warp&gt; {
+ * }
+ * </pre>
+ *
+ * @see Component
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Serialization {
+
+    /**
+     * @return The profile used by the repository's store.
+     */
+    Profile value() default Profile.COMPACT;
+
+    enum Profile {
+        /**
+         * Single-line JSON without indentation, used for storage unless a repository asks otherwise.
+         */
+        COMPACT,
+        /**
+         * Indented, human-readable JSON.
+         */
+        PRETTY
+    }
+}
@@ -0,0 +1,27 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @Unique} annotation marks a field of a Mongo entity whose value no two entities may share,
+ * such as a clan tag.
+ *
+ * <p>Mongo stores create a unique index on the field when they start, and a save that would duplicate a
+ * value fails with a {@code MongoWriteException}. Entities without the field, for example because it is
+ * {@code null}, are left out of the index. If the collection already holds duplicates the index is not
+ * created and the error is logged. Other stores ignore the annotation.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * public class Clan {
+ *     &#64;Unique
+ *     private String tag;
+ * }
+ * </pre>
+ *
+ * @see Indexed
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Unique {
+}
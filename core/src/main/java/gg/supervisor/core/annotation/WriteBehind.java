@@ -0,0 +1,47 @@
+package gg.supervisor.core.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * The {@code @WriteBehind} annotation buffers a repository's saves and deletes in memory and writes them to
+ * the store in batches, instead of one file write or database round trip per call.
+ *
+ * <p>Use it for hot entities that are saved many times per second, such as balances. Repeated saves of one
+ * key between two flushes are written once. Reads always see the latest save, including buffered ones.
+ * Buffered changes are written every {@link #flushIntervalMillis()}, as soon as {@link #flushThreshold()}
+ * keys are waiting, when the plugin disables, and for one key through {@code Repository#flushAsync(String)},
+ * which the player profile listener calls on quit. If {@link #maxPending()} keys are waiting, callers write
+ * the buffer themselves before their change is accepted.</p>
+ *
+ * <p>Changes that are still buffered are lost if the server crashes, so keep data that must never roll back
+ * in repositories without this annotation.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * &#64;Component
+ * &#64;WriteBehind(flushIntervalMillis = 10_000)
+ * public interface BalanceRepository extends MongoPlayerRepository&lt;Balance&gt; {
+ * }
+ * </pre>
+ *
+ * @see gg.supervisor.core.repository.store.WriteBehindStore
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WriteBehind {
+
+    /**
+     * @return The time between two background flushes, in milliseconds.
+     */
+    long flushIntervalMillis() default 5_000;
+
+    /**
+     * @return The number of changed keys that triggers a background flush before the interval passes.
+     */
+    int flushThreshold() default 1_000;
+
+    /**
+     * @return The number of changed keys at which callers have to flush before adding more.
+     */
+    int maxPending() default 10_000;
+}
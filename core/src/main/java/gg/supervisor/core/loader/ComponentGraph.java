@@ -0,0 +1,179 @@
+package gg.supervisor.core.loader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code ComponentGraph} holds the dependency edges between components discovered by the
+ * {@link SupervisorLoader}. Edges are derived from the parameters of each component's
+ * {@code @ComponentConstructor} (or its first public constructor).
+ *
+ * <p>The graph is validated up front: a dependency cycle is reported with its full path instead of
+ * surfacing later as a stack overflow during recursive construction. Once validated, independent
+ * subgraphs are instantiated concurrently, with every node waiting only on its own dependencies.</p>
+ */
+final class ComponentGraph {
+
+    // Node -> the nodes it depends on, in declaration order
+    private final Map<Class<?>, Set<Class<?>>> dependencies = new LinkedHashMap<>();
+
+    // Node -> length of its longest dependency chain, filled in by sort()
+    private final Map<Class<?>, Integer> depths = new HashMap<>();
+
+    boolean contains(Class<?> node) {
+        return dependencies.containsKey(node);
+    }
+
+    void add(Class<?> node, Set<Class<?>> nodeDependencies) {
+        dependencies.put(node, new LinkedHashSet<>(nodeDependencies));
+    }
+
+    Set<Class<?>> getDependencies(Class<?> node) {
+        return dependencies.getOrDefault(node, Collections.emptySet());
+    }
+
+    /**
+     * Sorts the graph so that every node appears after all of its dependencies.
+     *
+     * @return The nodes in dependency order.
+     * @throws IllegalStateException if the graph contains a cycle.
+     */
+    List<Class<?>> sort() {
+        List<Class<?>> order = new ArrayList<>(dependencies.size());
+        Set<Class<?>> visited = new HashSet<>();
+        List<Class<?>> path = new ArrayList<>();
+
+        for (Class<?> node : dependencies.keySet()) {
+            visit(node, visited, path, order);
+        }
+        return order;
+    }
+
+    private void visit(Class<?> node, Set<Class<?>> visited, List<Class<?>> path, List<Class<?>> order) {
+        if (visited.contains(node)) {
+            return;
+        }
+
+        int index = path.indexOf(node);
+        if (index >= 0) {
+            List<Class<?>> cycle = new ArrayList<>(path.subList(index, path.size()));
+            cycle.add(node);
+            throw new IllegalStateException("Dependency cycle detected: " + cycle.stream()
+                    .map(Class::getName)
+                    .collect(Collectors.joining(" -> ")));
+        }
+
+        path.add(node);
+        for (Class<?> dependency : getDependencies(node)) {
+            visit(dependency, visited, path, order);
+        }
+        path.remove(path.size() - 1);
+
+        int depth = 0;
+        for (Class<?> dependency : getDependencies(node)) {
+            depth = Math.max(depth, depths.getOrDefault(dependency, 0) + 1);
+        }
+        depths.put(node, depth);
+
+        visited.add(node);
+        order.add(node);
+    }
+
+    /**
+     * Returns the length of the longest dependency chain below the given node, as computed by {@link #sort()}.
+     *
+     * @param node The node to look up.
+     * @return The dependency depth, {@code 0} for nodes without dependencies or unknown nodes.
+     */
+    int getDepth(Class<?> node) {
+        return depths.getOrDefault(node, 0);
+    }
+
+    /**
+     * Collects the given roots and everything they transitively depend on, skipping nodes that were
+     * already created.
+     *
+     * @param roots   The nodes to start from.
+     * @param created Nodes that are already available and do not need to be scheduled again.
+     * @return The closure of the roots.
+     */
+    Set<Class<?>> closure(Collection<Class<?>> roots, Set<Class<?>> created) {
+        Set<Class<?>> closure = new LinkedHashSet<>();
+        List<Class<?>> pending = new ArrayList<>(roots);
+
+        while (!pending.isEmpty()) {
+            Class<?> node = pending.remove(pending.size() - 1);
+            if (created.contains(node) || !closure.add(node)) {
+                continue;
+            }
+            pending.addAll(getDependencies(node));
+        }
+        return closure;
+    }
+
+    /**
+     * Instantiates the given nodes on the supplied executor. A node is started as soon as all of its
+     * dependencies inside {@code nodes} have completed; nodes whose dependencies failed are skipped.
+     *
+     * <p>This method blocks until every node has either completed, failed or been skipped.</p>
+     *
+     * @param order    The full dependency order returned by {@link #sort()}.
+     * @param nodes    The subset of nodes to instantiate.
+     * @param executor The executor used to run the factories.
+     * @param factory  Creates and registers a single node; any exception marks the node as failed.
+     * @param logger   The plugin's logger, told about nodes skipped because of a failed dependency.
+     * @return The nodes that were created successfully.
+     */
+    Set<Class<?>> execute(List<Class<?>> order, Set<Class<?>> nodes, Executor executor, Consumer<Class<?>> factory, Logger logger) {
+        Map<Class<?>, CompletableFuture<Void>> futures = new HashMap<>();
+        Set<Class<?>> failed = ConcurrentHashMap.newKeySet();
+
+        for (Class<?> node : order) {
+            if (!nodes.contains(node)) {
+                continue;
+            }
+
+            CompletableFuture<?>[] upstream = getDependencies(node).stream()
+                    .map(futures::get)
+                    .filter(Objects::nonNull)
+                    .toArray(CompletableFuture[]::new);
+
+            futures.put(node, CompletableFuture.allOf(upstream).thenRunAsync(() -> {
+                try {
+                    factory.accept(node);
+                } catch (RuntimeException e) {
+                    failed.add(node);
+                    throw e;
+                }
+            }, executor));
+        }
+
+        Set<Class<?>> created = new LinkedHashSet<>();
+        for (Map.Entry<Class<?>, CompletableFuture<Void>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().join();
+                created.add(entry.getKey());
+            } catch (RuntimeException e) {
+                if (!failed.contains(entry.getKey())) {
+                    logger.warning("Skipped " + entry.getKey().getName() + " because one of its dependencies failed to load");
+                }
+            }
+        }
+        return created;
+    }
+}
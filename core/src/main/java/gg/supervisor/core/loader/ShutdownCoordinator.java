@@ -0,0 +1,135 @@
+package gg.supervisor.core.loader;
+
+import gg.supervisor.core.repository.store.Store;
+import gg.supervisor.core.repository.store.StoreExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code ShutdownCoordinator} flushes and closes every registered store when the plugin is disabling.
+ *
+ * <p>Each store is flushed and then closed on its own worker, so a slow database does not hold up the
+ * JSON files and vice versa. All stores share one global deadline: once it passes, the stores that are
+ * still busy are reported by name and the server is allowed to continue shutting down.</p>
+ *
+ * <p>A store's I/O executor is drained before the store is flushed, so asynchronous saves that are still
+ * queued reach the store first.</p>
+ */
+final class ShutdownCoordinator {
+
+    private static final int MAX_SHUTDOWN_THREADS = 8;
+
+    // Guarded by this; stores may be registered from loader threads or by lazy repositories at any time
+    private final List<Hook> hooks = new ArrayList<>();
+
+    void register(String name, Store<?> store) {
+        register(name, () -> {
+            try {
+                store.flush();
+            } finally {
+                store.close();
+            }
+        });
+    }
+
+    void register(String name, Store<?> store, StoreExecutor executor) {
+        register(name, () -> {
+            try {
+                // Bounded by the shared deadline, the coordinator interrupts this worker once it passes
+                executor.shutdown(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            try {
+                store.flush();
+            } finally {
+                store.close();
+            }
+        });
+    }
+
+    synchronized void register(String name, Runnable task) {
+        hooks.add(new Hook(name, task));
+    }
+
+    /**
+     * Runs every registered hook and waits until they finish or the deadline passes. Hooks are removed
+     * once they have been started, so calling this again only runs hooks registered in the meantime.
+     *
+     * @param logger        The logger used for the shutdown report.
+     * @param timeoutMillis The time all hooks together may take.
+     */
+    void shutdown(Logger logger, long timeoutMillis) {
+        List<Hook> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(pending.size(), MAX_SHUTDOWN_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Shutdown #" + counter.incrementAndGet());
+            // Workers are daemon threads, the server is not kept alive by a hanging store
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>(pending.size());
+        for (Hook hook : pending) {
+            futures.add(executor.submit(hook.task));
+        }
+        executor.shutdown();
+
+        List<String> unfinished = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            Hook hook = pending.get(i);
+            try {
+                futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                unfinished.add(hook.name);
+            } catch (ExecutionException e) {
+                failed++;
+                logger.log(Level.SEVERE, "Failed to flush " + hook.name, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unfinished.add(hook.name);
+            }
+        }
+
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        if (unfinished.isEmpty()) {
+            logger.info(String.format("Flushed %d stores in %.2f ms (%d failed)", pending.size(), millis, failed));
+        } else {
+            executor.shutdownNow();
+            logger.severe(String.format("Shutdown deadline of %d ms reached, %d of %d stores did not finish flushing: %s",
+                    timeoutMillis, unfinished.size(), pending.size(), String.join(", ", unfinished)));
+        }
+    }
+
+    private static final class Hook {
+        private final String name;
+        private final Runnable task;
+
+        private Hook(String name, Runnable task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+}
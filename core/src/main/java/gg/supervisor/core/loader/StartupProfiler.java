@@ -0,0 +1,207 @@
+package gg.supervisor.core.loader;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * The {@code StartupProfiler} records how long each step of {@link SupervisorLoader#register} takes.
+ *
+ * <p>For every adapter, configuration, repository and component it captures the wall time, the bytes
+ * allocated by the constructing thread and the depth of the component in the dependency graph. Timings
+ * are inclusive: a component that builds a configuration on demand also accounts for that configuration.
+ * Once enabling finishes, a report sorted by wall time is logged and the full data is written as JSON
+ * so startup regressions can be compared between builds.</p>
+ */
+final class StartupProfiler {
+
+    static final String REPORT_FILE = "startup-report.json";
+
+    // Number of entries printed to the console, the JSON file always contains everything
+    private static final int CONSOLE_ENTRIES = 10;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final Sample total = begin();
+
+    private volatile ToIntFunction<Class<?>> depths = clazz -> 0;
+
+    enum Kind {
+        PHASE, ADAPTER, CONFIG, REPOSITORY, COMPONENT
+    }
+
+    /**
+     * Starts measuring on the current thread. Cheap enough to call unconditionally.
+     *
+     * @return The starting point of the measurement.
+     */
+    static Sample begin() {
+        return new Sample(System.nanoTime(), allocatedBytes());
+    }
+
+    void setDepths(ToIntFunction<Class<?>> depths) {
+        this.depths = depths;
+    }
+
+    void record(Sample sample, Kind kind, String name) {
+        record(sample, kind, name, 0);
+    }
+
+    void record(Sample sample, Kind kind, Class<?> clazz) {
+        record(sample, kind, clazz.getName(), depths.applyAsInt(clazz));
+    }
+
+    private void record(Sample sample, Kind kind, String name, int depth) {
+        long allocated = sample.allocatedBytes >= 0 ? Math.max(0, allocatedBytes() - sample.allocatedBytes) : -1;
+        entries.add(new Entry(kind, name, System.nanoTime() - sample.startNanos, allocated, depth, Thread.currentThread().getName()));
+    }
+
+    /**
+     * Logs the report and writes it to {@link #REPORT_FILE} inside the given folder.
+     *
+     * @param pluginName The plugin being enabled.
+     * @param logger     The logger used for the console report.
+     * @param dataFolder The plugin data folder, or {@code null} to skip the JSON file.
+     */
+    void report(String pluginName, Logger logger, File dataFolder) {
+        long totalNanos = System.nanoTime() - total.startNanos;
+
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong((Entry entry) -> entry.wallNanos).reversed());
+
+        Map<Kind, long[]> perKind = new EnumMap<>(Kind.class);
+        for (Entry entry : sorted) {
+            long[] summary = perKind.computeIfAbsent(entry.kind, kind -> new long[2]);
+            summary[0]++;
+            summary[1] += entry.wallNanos;
+        }
+
+        logger.info(String.format("Wired %s in %.2f ms (report: %s)", pluginName, millis(totalNanos), REPORT_FILE));
+        perKind.forEach((kind, summary) -> logger.info(String.format("  %-10s %4d in %8.2f ms", kind, summary[0], millis(summary[1]))));
+
+        int printed = 0;
+        for (Entry entry : sorted) {
+            if (entry.kind == Kind.PHASE) {
+                continue;
+            }
+            if (printed++ == CONSOLE_ENTRIES) {
+                break;
+            }
+            logger.info(String.format("  %8.2f ms %10s depth %d  %s", millis(entry.wallNanos), formatBytes(entry.allocatedBytes), entry.depth, entry.name));
+        }
+
+        if (dataFolder != null) {
+            writeJson(pluginName, totalNanos, sorted, new File(dataFolder, REPORT_FILE));
+        }
+    }
+
+    private void writeJson(String pluginName, long totalNanos, List<Entry> sorted, File file) {
+        JsonObject root = new JsonObject();
+        root.addProperty("plugin", pluginName);
+        root.addProperty("timestamp", System.currentTimeMillis());
+        root.addProperty("totalMillis", millis(totalNanos));
+        root.addProperty("allocationTracked", ALLOCATION_SUPPORTED);
+
+        JsonArray array = new JsonArray();
+        for (Entry entry : sorted) {
+            JsonObject object = new JsonObject();
+            object.addProperty("kind", entry.kind.name());
+            object.addProperty("name", entry.name);
+            object.addProperty("wallMillis", millis(entry.wallNanos));
+            object.addProperty("allocatedBytes", entry.allocatedBytes);
+            object.addProperty("depth", entry.depth);
+            object.addProperty("thread", entry.thread);
+            array.add(object);
+        }
+        root.add("entries", array);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            gson.toJson(root, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "n/a";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static long allocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()
+                    && bean.isThreadAllocatedMemoryEnabled();
+        } catch (UnsupportedOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * The starting point of a single measurement.
+     */
+    static final class Sample {
+        private final long startNanos;
+        private final long allocatedBytes;
+
+        private Sample(long startNanos, long allocatedBytes) {
+            this.startNanos = startNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private static final class Entry {
+        private final Kind kind;
+        private final String name;
+        private final long wallNanos;
+        private final long allocatedBytes;
+        private final int depth;
+        private final String thread;
+
+        private Entry(Kind kind, String name, long wallNanos, long allocatedBytes, int depth, String thread) {
+            this.kind = kind;
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.depth = depth;
+            this.thread = thread;
+        }
+    }
+}
@@ -3,26 +3,43 @@ package gg.supervisor.core.loader;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
+import gg.supervisor.core.adapters.handler.LazyProxyHandler;
 import gg.supervisor.core.adapters.types.entity.PlayerTypeAdapter;
 import gg.supervisor.core.adapters.types.item.ItemStackBase64Adapter;
+import gg.supervisor.core.adapters.types.world.BlockReferenceTypeAdapter;
 import gg.supervisor.core.adapters.types.world.BlockTypeAdapter;
+import gg.supervisor.core.adapters.types.world.ChunkReferenceTypeAdapter;
 import gg.supervisor.core.adapters.types.world.ChunkTypeAdapter;
+import gg.supervisor.core.adapters.types.world.LocationReferenceTypeAdapter;
 import gg.supervisor.core.adapters.types.world.LocationTypeAdapter;
 import gg.supervisor.core.adapters.types.world.WorldTypeAdapter;
 import gg.supervisor.core.annotation.Adapter;
+import gg.supervisor.core.annotation.Cache;
 import gg.supervisor.core.annotation.Component;
 import gg.supervisor.core.annotation.ComponentConstructor;
 import gg.supervisor.core.annotation.Configuration;
+import gg.supervisor.core.annotation.Lazy;
+import gg.supervisor.core.annotation.Serialization;
+import gg.supervisor.core.annotation.WriteBehind;
 import gg.supervisor.core.config.ConfigService;
+import gg.supervisor.core.loader.factory.InstanceFactory;
+import gg.supervisor.core.loader.index.ComponentIndex;
 import gg.supervisor.core.repository.JsonPlayerRepository;
 import gg.supervisor.core.repository.PlayerRepository;
 import gg.supervisor.core.repository.Repository;
+import gg.supervisor.core.repository.cache.EntityCache;
 import gg.supervisor.core.repository.json.SimpleProxyHandler;
 import gg.supervisor.core.repository.player.PlayerRepositoryListener;
 import gg.supervisor.core.repository.store.JsonPlayerStore;
 import gg.supervisor.core.repository.store.JsonStore;
 import gg.supervisor.core.repository.store.Store;
+import gg.supervisor.core.repository.store.StoreExecutor;
+import gg.supervisor.core.repository.store.WriteBehindStore;
 import gg.supervisor.core.util.Services;
+import gg.supervisor.core.world.BlockReference;
+import gg.supervisor.core.world.ChunkReference;
+import gg.supervisor.core.world.LocationReference;
+import gg.supervisor.core.world.WorldReferenceListener;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -39,19 +56,63 @@ import org.reflections.util.ConfigurationBuilder;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class SupervisorLoader {
 
-    private static final List<Runnable> DISABLE = new ArrayList<>();
+    private static final String MONGO_CONFIG_CLASS = "gg.supervisor.repository.mongo.MongoConfig";
+    private static final int MAX_LOADER_THREADS = 4;
+
+    // Upper bound for flushing every store on disable, overridable with -Dsupervisor.shutdownTimeout=<millis>
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = Long.getLong("supervisor.shutdownTimeout", 10_000L);
+
+    private static final ShutdownCoordinator SHUTDOWN = new ShutdownCoordinator();
+    private static volatile long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+    // One lock per class so that concurrent wiring never builds the same component twice
+    private static final Map<Class<?>, Object> CONSTRUCTION_LOCKS = new ConcurrentHashMap<>();
+    // Listeners created while wiring; registered on the main thread once every component is ready
+    private static volatile Queue<Listener> PENDING_LISTENERS;
+    // Only set while register is running; creation after enable is not profiled
+    private static volatile StartupProfiler PROFILER;
+    // Human-readable profile, kept for plugin code that serializes through the loader
     public static Gson GSON;
+    // Compact profile used by stores unless a repository selects another one with @Serialization
+    public static Gson STORAGE_GSON;
+
+    // Constructors are resolved once per class and invoked through cached method handles afterwards
+    private static final ClassValue<InstanceFactory<?>> COMPONENT_FACTORIES = new ClassValue<>() {
+        @Override
+        protected InstanceFactory<?> computeValue(Class<?> type) {
+            Constructor<?> constructor = getComponentConstructor(type);
+            return constructor != null ? InstanceFactory.of(constructor) : null;
+        }
+    };
+    private static final ClassValue<InstanceFactory<?>> CONFIG_FACTORIES = new ClassValue<>() {
+        @Override
+        protected InstanceFactory<?> computeValue(Class<?> type) {
+            return InstanceFactory.noArgs(type);
+        }
+    };
+    private static final Map<String, InstanceFactory<?>> STORE_FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<String, Optional<Class<?>>> OPTIONAL_CLASSES = new ConcurrentHashMap<>();
 
     public static void register(Object plugin, Object... registeredObjects) {
         if (plugin instanceof Plugin p) {
@@ -68,20 +129,117 @@ public class SupervisorLoader {
         String pluginPackageName = plugin.getClass().getPackage().getName();
         ClassLoader pluginClassLoader = plugin.getClass().getClassLoader();
 
+        StartupProfiler profiler = new StartupProfiler();
+        PROFILER = profiler;
+        try {
+            StartupProfiler.Sample sample = StartupProfiler.begin();
+            List<Class<?>> candidates = ComponentIndex.load(pluginClassLoader, pluginPackageName);
+            if (candidates == null) {
+                candidates = scanCandidates(pluginPackageName, pluginClassLoader);
+                profiler.record(sample, StartupProfiler.Kind.PHASE, "scan (reflections)");
+            } else {
+                profiler.record(sample, StartupProfiler.Kind.PHASE, "scan (index)");
+            }
+
+            sample = StartupProfiler.begin();
+            GsonBuilder gsonBuilder = createGsonWithAdapters(candidates);
+            STORAGE_GSON = gsonBuilder.create();
+            GSON = gsonBuilder.setPrettyPrinting().create();
+            profiler.record(sample, StartupProfiler.Kind.PHASE, "adapters");
+
+            sample = StartupProfiler.begin();
+            loadComponents(candidates, plugin);
+            profiler.record(sample, StartupProfiler.Kind.PHASE, "components");
+        } finally {
+            PROFILER = null;
+        }
+
+        if (plugin instanceof Plugin p) {
+            // Releases worlds cached by stored world references when they unload
+            registerListener(new WorldReferenceListener(), p);
+            profiler.report(p.getName(), p.getLogger(), p.getDataFolder());
+        } else {
+            profiler.report(plugin.getClass().getSimpleName(), Bukkit.getLogger(), null);
+        }
+    }
+
+    private static void record(StartupProfiler.Sample sample, StartupProfiler.Kind kind, Class<?> clazz) {
+        StartupProfiler profiler = PROFILER;
+        if (profiler != null) {
+            profiler.record(sample, kind, clazz);
+        }
+    }
+
+    /**
+     * Flushes and closes every store created by the loader, in parallel and bounded by the shutdown timeout.
+     * Stores that did not finish in time are reported by name.
+     *
+     * @param plugin The plugin being disabled.
+     */
+    public static void disable(Plugin plugin) {
+        SHUTDOWN.shutdown(plugin != null ? plugin.getLogger() : Bukkit.getLogger(), shutdownTimeoutMillis);
+    }
+
+    /**
+     * Sets the time {@link #disable(Plugin)} waits for all stores together to flush.
+     *
+     * @param timeout The deadline, must be positive.
+     * @param unit    The unit of the deadline.
+     */
+    public static void setShutdownTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Shutdown timeout must be positive");
+        }
+        shutdownTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Registers a store created outside the loader, so it is flushed and closed when the plugin disables.
+     *
+     * @param name  The name used in the shutdown report.
+     * @param store The store to flush and close.
+     */
+    public static void registerStore(String name, Store<?> store) {
+        SHUTDOWN.register(name, store);
+    }
+
+    /**
+     * Registers a task that runs alongside the store flushes when the plugin disables.
+     *
+     * @param name The name used in the shutdown report.
+     * @param task The task to run.
+     */
+    public static void registerShutdownHook(String name, Runnable task) {
+        SHUTDOWN.register(name, task);
+    }
+
+    private static List<Class<?>> scanCandidates(String pluginPackageName, ClassLoader pluginClassLoader) {
         Reflections reflections = new Reflections(new ConfigurationBuilder()
                 .setUrls(ClasspathHelper.forPackage(pluginPackageName, pluginClassLoader))
                 .setScanners(new SubTypesScanner(false)));
 
-        GSON = createGsonWithAdapters(reflections, plugin);
-        loadComponents(reflections, plugin);
+        return reflections.getAll(new SubTypesScanner(false)).stream()
+                .filter(x -> x.startsWith(pluginPackageName))
+                .map(x -> {
+                    try {
+                        Class<?> clazz = Class.forName(x, false, pluginClassLoader);
+                        return isCandidate(clazz) ? clazz : null;
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        System.out.println("Couldn't locate class with the name " + x);
+                        return null;
+                    }
+                }).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
-    public static void disable(Plugin plugin) {
-        DISABLE.forEach(Runnable::run);
+    private static boolean isCandidate(Class<?> clazz) {
+        return clazz.isAnnotationPresent(Component.class)
+                || clazz.isAnnotationPresent(Configuration.class)
+                || clazz.isAnnotationPresent(Adapter.class)
+                || Repository.class.isAssignableFrom(clazz);
     }
 
-    private static Gson createGsonWithAdapters(Reflections reflections, Object plugin) {
-        GsonBuilder gsonBuilder = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting();
+    private static GsonBuilder createGsonWithAdapters(List<Class<?>> candidates) {
+        GsonBuilder gsonBuilder = new GsonBuilder().disableHtmlEscaping();
 
         gsonBuilder.registerTypeAdapter(ItemStack.class, new ItemStackBase64Adapter());
         gsonBuilder.registerTypeAdapter(Block.class, new BlockTypeAdapter());
@@ -89,94 +247,257 @@ public class SupervisorLoader {
         gsonBuilder.registerTypeAdapter(Location.class, new LocationTypeAdapter());
         gsonBuilder.registerTypeAdapter(Chunk.class, new ChunkTypeAdapter());
         gsonBuilder.registerTypeAdapter(Player.class, new PlayerTypeAdapter());
+        // Position-only references, read without resolving the world or loading chunks
+        gsonBuilder.registerTypeAdapter(BlockReference.class, new BlockReferenceTypeAdapter());
+        gsonBuilder.registerTypeAdapter(ChunkReference.class, new ChunkReferenceTypeAdapter());
+        gsonBuilder.registerTypeAdapter(LocationReference.class, new LocationReferenceTypeAdapter());
 
-        List<Class<?>> allClasses = reflections.getAll(new SubTypesScanner(false)).stream()
-                .filter(x -> x.startsWith(plugin.getClass().getPackage().getName()))
-                .map(x -> {
-                    try {
-                        Class<?> clazz = Class.forName(x);
-                        return clazz.isAnnotationPresent(Adapter.class) ? clazz : null;
-                    } catch (ClassNotFoundException e) {
-                        System.out.println("Couldn't locate class with the name " + x);
-                        return null;
-                    }
-                }).filter(Objects::nonNull).collect(Collectors.toList());
+        List<Class<?>> allClasses = candidates.stream()
+                .filter(clazz -> clazz.isAnnotationPresent(Adapter.class))
+                .collect(Collectors.toList());
 
         for (Class<?> adapterClass : allClasses) {
             if (TypeAdapter.class.isAssignableFrom(adapterClass)) {
+                StartupProfiler.Sample sample = StartupProfiler.begin();
                 try {
-                    Constructor<?> constructor = adapterClass.getConstructor();
-                    TypeAdapter<?> adapterInstance = (TypeAdapter<?>) constructor.newInstance();
+                    TypeAdapter<?> adapterInstance = (TypeAdapter<?>) InstanceFactory.of(adapterClass.getConstructor()).newInstance();
                     gsonBuilder.registerTypeAdapter(getGenericType(adapterClass), adapterInstance);
                     Bukkit.getLogger().info("Registered adapter " + adapterClass.getSimpleName().replaceAll("Class", ""));
                 } catch (Exception e) {
                     e.printStackTrace();
                     System.out.println("Failed to register adapter: " + adapterClass.getName());
+                } finally {
+                    record(sample, StartupProfiler.Kind.ADAPTER, adapterClass);
                 }
             }
         }
 
-        return gsonBuilder.create();
+        return gsonBuilder;
+    }
+
+    /**
+     * Returns the serializer for the given profile. Both profiles share the registered type adapters.
+     *
+     * @param profile The serialization profile.
+     * @return The matching {@code Gson} instance.
+     */
+    public static Gson getGson(Serialization.Profile profile) {
+        return profile == Serialization.Profile.PRETTY ? GSON : STORAGE_GSON;
     }
 
     private static Class<?> getGenericType(Class<?> adapterClass) {
         return ((Class<?>) ((ParameterizedType) adapterClass.getGenericSuperclass()).getActualTypeArguments()[0]);
     }
 
-    private static void loadComponents(Reflections reflections, Object plugin) {
-        List<Class<?>> allClasses = reflections.getAll(new SubTypesScanner(false)).stream()
-                .filter(x -> x.startsWith(plugin.getClass().getPackage().getName()))
-                .map(x -> {
-                    try {
-                        Class<?> clazz = Class.forName(x);
-                        return clazz.isAnnotationPresent(Component.class) ? clazz : null;
-                    } catch (ClassNotFoundException e) {
-                        System.out.println("Couldn't locate class with the name " + x);
-                        return null;
-                    }
-                }).filter(Objects::nonNull)
+    private static void loadComponents(List<Class<?>> candidates, Object plugin) {
+        List<Class<?>> allClasses = candidates.stream()
+                .filter(clazz -> clazz.isAnnotationPresent(Component.class))
+                .filter(clazz -> !isDeferred(clazz))
                 .sorted(Comparator.comparingInt(clazz -> clazz.getAnnotation(Component.class).priority().getPriority()))
                 .collect(Collectors.toList());
 
+        ComponentGraph graph = new ComponentGraph();
         for (Class<?> clazz : allClasses) {
-            try {
-                if (clazz.isAnnotationPresent(Configuration.class) || clazz.isAnnotationPresent(Component.class)) {
-                    if (Repository.class.isAssignableFrom(clazz)) {
-                        createRepositoryInstance(clazz, (Plugin) plugin);
-                    } else {
-                        Object instance = createComponentInstance(clazz, (Plugin) plugin);
-                        if (instance instanceof Listener) {
-                            Bukkit.getPluginManager().registerEvents((Listener) instance, (Plugin) plugin);
-                        }
-                        Services.register(clazz, instance);
-                    }
+            addToGraph(graph, clazz);
+        }
+
+        // Fails fast with the full cycle path instead of recursing until the stack overflows
+        List<Class<?>> order = graph.sort();
+
+        StartupProfiler profiler = PROFILER;
+        if (profiler != null) {
+            profiler.setDepths(graph::getDepth);
+        }
+
+        // Priorities act as barriers: a tier only starts once every earlier tier has been wired
+        Map<Integer, List<Class<?>>> tiers = allClasses.stream().collect(Collectors.groupingBy(
+                clazz -> clazz.getAnnotation(Component.class).priority().getPriority(),
+                TreeMap::new,
+                Collectors.toList()));
+
+        PENDING_LISTENERS = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = createLoaderExecutor(plugin.getClass().getClassLoader());
+        try {
+            Set<Class<?>> attempted = new HashSet<>();
+            for (List<Class<?>> tier : tiers.values()) {
+                Set<Class<?>> nodes = graph.closure(tier, attempted);
+                attempted.addAll(nodes);
+                graph.execute(order, nodes, executor, clazz -> instantiate(clazz, (Plugin) plugin), ((Plugin) plugin).getLogger());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Listeners are registered on the calling (main) thread once everything is wired
+        Queue<Listener> listeners = PENDING_LISTENERS;
+        PENDING_LISTENERS = null;
+        for (Listener listener : listeners) {
+            Bukkit.getPluginManager().registerEvents(listener, (Plugin) plugin);
+        }
+    }
+
+    private static void addToGraph(ComponentGraph graph, Class<?> clazz) {
+        if (graph.contains(clazz)) {
+            return;
+        }
+
+        Set<Class<?>> dependencies = resolveDependencies(clazz);
+        graph.add(clazz, dependencies);
+
+        for (Class<?> dependency : dependencies) {
+            addToGraph(graph, dependency);
+        }
+    }
+
+    private static Set<Class<?>> resolveDependencies(Class<?> clazz) {
+        Set<Class<?>> dependencies = new LinkedHashSet<>();
+
+        if (clazz.isAnnotationPresent(Configuration.class) && !clazz.isAnnotationPresent(Component.class)) {
+            Class<?> service = clazz.getAnnotation(Configuration.class).service();
+            if (Services.getRegistered(service) == null && service.isAnnotationPresent(Component.class)) {
+                dependencies.add(service);
+            }
+            return dependencies;
+        }
+
+        if (Repository.class.isAssignableFrom(clazz)) {
+            // Lazy repositories resolve their store dependencies on first use
+            if (isMongoRepository(clazz) && !clazz.isAnnotationPresent(Lazy.class)) {
+                Class<?> mongoConfigClass = findClass(MONGO_CONFIG_CLASS);
+                // A missing MongoConfig is reported when the repository itself is created
+                if (mongoConfigClass != null && Services.getRegistered(mongoConfigClass) == null) {
+                    dependencies.add(mongoConfigClass);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+            return dependencies;
+        }
+
+        InstanceFactory<?> factory;
+        try {
+            factory = COMPONENT_FACTORIES.get(clazz);
+        } catch (IllegalStateException e) {
+            // Reported when the component itself is created
+            return dependencies;
+        }
+
+        if (factory == null) {
+            return dependencies;
+        }
+
+        for (Class<?> paramType : factory.getParameterTypes()) {
+            if (Services.getRegistered(paramType) != null || paramType.isAssignableFrom(Plugin.class)) {
+                continue;
+            }
+            if (paramType.isAnnotationPresent(Component.class) || paramType.isAnnotationPresent(Configuration.class)) {
+                dependencies.add(paramType);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Lazy component classes cannot be proxied, so they are left out of startup wiring entirely and
+     * created on first request. Lazy repositories still take part, as they are registered as proxies.
+     */
+    private static boolean isDeferred(Class<?> clazz) {
+        return clazz.isAnnotationPresent(Lazy.class)
+                && !Repository.class.isAssignableFrom(clazz)
+                && !Listener.class.isAssignableFrom(clazz);
+    }
+
+    private static void instantiate(Class<?> clazz, Plugin plugin) {
+        try {
+            if (Repository.class.isAssignableFrom(clazz)) {
+                createRepositoryInstance(clazz, plugin);
+            } else if (clazz.isAnnotationPresent(Configuration.class) && !clazz.isAnnotationPresent(Component.class)) {
+                registerConfig(clazz, plugin);
+            } else {
+                Object instance = createComponentInstance(clazz, plugin);
+                if (instance instanceof Listener listener) {
+                    registerListener(listener, plugin);
+                }
+                Services.register(clazz, instance);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Failed to load component: " + clazz.getName(), e);
+        }
+    }
+
+    private static ExecutorService createLoaderExecutor(ClassLoader pluginClassLoader) {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOADER_THREADS));
+        AtomicInteger counter = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Loader #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            // Drivers such as Mongo and Jackson resolve classes through the context class loader
+            thread.setContextClassLoader(pluginClassLoader);
+            return thread;
+        });
+    }
+
+    private static void registerListener(Listener listener, Plugin plugin) {
+        Queue<Listener> pending = PENDING_LISTENERS;
+        if (pending != null) {
+            pending.add(listener);
+        } else if (Bukkit.isPrimaryThread()) {
+            Bukkit.getPluginManager().registerEvents(listener, plugin);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, () -> Bukkit.getPluginManager().registerEvents(listener, plugin));
         }
     }
 
     private static Object createComponentInstance(Class<?> clazz, Plugin plugin) throws Exception {
 
-        if (Services.getService(clazz) != null)
-            return Services.getService(clazz);
+        // Exact lookups, a registered subclass must not stand in for the component itself
+        Object existing = Services.getRegistered(clazz);
+        if (existing != null)
+            return existing;
+
+        synchronized (constructionLock(clazz)) {
+            existing = Services.getRegistered(clazz);
+            if (existing != null)
+                return existing;
+
+            StartupProfiler.Sample sample = StartupProfiler.begin();
+            Object instance = constructComponent(clazz, plugin);
+            if (instance != null) {
+                Services.register(clazz, instance);
+                if (!Repository.class.isAssignableFrom(clazz)) {
+                    record(sample, StartupProfiler.Kind.COMPONENT, clazz);
+                }
+            }
+            return instance;
+        }
+    }
+
+    private static Object constructionLock(Class<?> clazz) {
+        return CONSTRUCTION_LOCKS.computeIfAbsent(clazz, key -> new Object());
+    }
 
-        Constructor<?> constructor = getComponentConstructor(clazz);
+    private static Object constructComponent(Class<?> clazz, Plugin plugin) throws Exception {
+        InstanceFactory<?> factory = COMPONENT_FACTORIES.get(clazz);
 
-        if (constructor == null) {
+        if (factory == null) {
             if (Repository.class.isAssignableFrom(clazz)) {
                 return createRepositoryInstance(clazz, plugin);
             }
             return null;
         }
 
-        Class<?>[] paramTypes = constructor.getParameterTypes();
+        Class<?>[] paramTypes = factory.getParameterTypes();
         Object[] params = new Object[paramTypes.length];
         for (int i = 0; i < paramTypes.length; i++) {
             Class<?> paramType = paramTypes[i];
 
-            Object serviceInstance = Services.getService(paramType);
+            // Components and configs are built under their own type; other types, such as an interface the
+            // parameter asks for, may be satisfied by the one service that implements them
+            Object serviceInstance = Services.getRegistered(paramType);
+            if (serviceInstance == null && !paramType.isAnnotationPresent(Component.class)
+                    && !paramType.isAnnotationPresent(Configuration.class)) {
+                serviceInstance = Services.getService(paramType);
+            }
             if (serviceInstance != null) {
                 params[i] = serviceInstance;
             } else if (paramType.isAssignableFrom(Plugin.class)) {
@@ -192,7 +513,7 @@ public class SupervisorLoader {
             }
         }
 
-        return constructor.newInstance(params);
+        return factory.newInstance(params);
     }
 
     public static Object registerConfig(Class<?> clazz, Plugin plugin) throws Exception {
@@ -200,6 +521,22 @@ public class SupervisorLoader {
             throw new IllegalArgumentException("Class " + clazz.getName() + " must be annotated with @Configuration");
         }
 
+        synchronized (constructionLock(clazz)) {
+            Object registered = Services.getRegistered(clazz);
+            if (registered != null) {
+                return registered;
+            }
+            StartupProfiler.Sample sample = StartupProfiler.begin();
+            try {
+                return createConfig(clazz, plugin);
+            } finally {
+                record(sample, StartupProfiler.Kind.CONFIG, clazz);
+            }
+        }
+    }
+
+    private static Object createConfig(Class<?> clazz, Plugin plugin) throws Exception {
+
         Configuration configuration = clazz.getAnnotation(Configuration.class);
         File configDirectory = new File(plugin.getDataFolder(), configuration.path());
 
@@ -210,9 +547,7 @@ public class SupervisorLoader {
         File configFile = new File(configDirectory, configuration.fileName());
         ConfigService configService = (ConfigService) createComponentInstance(configuration.service(), plugin);
 
-        Constructor<?> constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible(true);
-        Object configInstance = constructor.newInstance();
+        Object configInstance = CONFIG_FACTORIES.get(clazz).newInstance();
 
         configService.register((Class<Object>) clazz, configInstance, configFile);
         Services.register(clazz, configInstance);
@@ -240,7 +575,36 @@ public class SupervisorLoader {
         return constructors[0];
     }
 
+    @SuppressWarnings("unchecked")
     private static <T> Repository<T> createRepositoryInstance(Class<T> clazz, Plugin plugin) throws Exception {
+        synchronized (constructionLock(clazz)) {
+            Object registered = Services.getRegistered(clazz);
+            if (registered != null) {
+                return (Repository<T>) registered;
+            }
+
+            StartupProfiler.Sample sample = StartupProfiler.begin();
+            Repository<T> repository;
+            if (clazz.isAnnotationPresent(Lazy.class)) {
+                // The store (and any connection it opens) is only created on the first repository call
+                repository = (Repository<T>) new LazyProxyHandler<>(clazz, () -> (T) createRepository(clazz, plugin)).getInstance();
+            } else {
+                repository = createRepository(clazz, plugin);
+            }
+
+            Services.register(clazz, repository);
+
+            if (repository instanceof PlayerRepository) {
+                registerListener(new PlayerRepositoryListener<>((PlayerRepository<T>) repository), plugin);
+                Bukkit.getLogger().info("Bounded " + clazz.getSimpleName() + " with player profiles.");
+            }
+
+            record(sample, StartupProfiler.Kind.REPOSITORY, clazz);
+            return repository;
+        }
+    }
+
+    private static <T> Repository<T> createRepository(Class<T> clazz, Plugin plugin) throws Exception {
         File storageFolder = new File(plugin.getDataFolder(), "storage");
         if (!storageFolder.exists() && !storageFolder.mkdirs()) {
             throw new IllegalStateException("Failed to create storage folder at: " + storageFolder.getPath());
@@ -249,12 +613,16 @@ public class SupervisorLoader {
         ParameterizedType parameterizedType = (ParameterizedType) clazz.getGenericInterfaces()[0];
         Class<T> entityType = (Class<T>) parameterizedType.getActualTypeArguments()[0];
 
+        Serialization serialization = clazz.getAnnotation(Serialization.class);
+        Gson gson = getGson(serialization != null ? serialization.value() : Serialization.Profile.COMPACT);
+
         Store<T> store;
-        if (JsonPlayerRepository.class.isAssignableFrom(clazz)) {
-            File playerDataDirectory = new File(storageFolder, clazz.getSimpleName());
-            store = new JsonPlayerStore<>(playerDataDirectory, entityType);
-        } else if (isMongoRepository(clazz)) {
-            Class<?> mongoConfigClass = Class.forName("gg.supervisor.repository.mongo.MongoConfig");
+        // Mongo player repositories also extend JsonPlayerRepository, so they must be matched first
+        if (isMongoRepository(clazz)) {
+            Class<?> mongoConfigClass = findClass(MONGO_CONFIG_CLASS);
+            if (mongoConfigClass == null) {
+                throw new ClassNotFoundException(MONGO_CONFIG_CLASS);
+            }
             Object mongoConfig = Services.loadIfPresent(mongoConfigClass);
 
             if (mongoConfig == null) {
@@ -262,94 +630,129 @@ public class SupervisorLoader {
             }
 
             if (isMongoPlayerRepository(clazz)) {
-                store = createMongoStoreInstance("gg.supervisor.repository.mongo.MongoPlayerStore", mongoConfig, clazz);
+                EntityCache<T> cache = EntityCache.create(clazz.getAnnotation(Cache.class));
+                store = createMongoStoreInstance("gg.supervisor.repository.mongo.MongoPlayerStore", mongoConfig, entityType, gson, cache, clazz.getSimpleName());
             } else {
-                store = createMongoStoreInstance("gg.supervisor.repository.mongo.MongoStore", mongoConfig, clazz);
+                store = createMongoStoreInstance("gg.supervisor.repository.mongo.MongoStore", mongoConfig, entityType, gson, null, clazz.getSimpleName());
             }
 
-            DISABLE.add(() -> {
-                try {
-                    Method closeMethod = store.getClass().getMethod("close");
-                    closeMethod.invoke(store);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
-
+        } else if (JsonPlayerRepository.class.isAssignableFrom(clazz)) {
+            File playerDataDirectory = new File(storageFolder, clazz.getSimpleName());
+            store = new JsonPlayerStore<>(playerDataDirectory, entityType, gson, EntityCache.create(clazz.getAnnotation(Cache.class)));
         } else if (isItemStackRepository(clazz)) {
-            store = createItemStackStoreInstance("gg.supervisor.repository.itemstack.ItemStackStore", entityType, plugin);
+            store = createItemStackStoreInstance("gg.supervisor.repository.itemstack.ItemStackStore", entityType, plugin, gson);
         } else {
             File storeFile = new File(storageFolder, clazz.getSimpleName() + ".json");
-            store = new JsonStore<>(storeFile, entityType);
+            store = new JsonStore<>(storeFile, entityType, gson);
+        }
+
+        WriteBehind writeBehind = clazz.getAnnotation(WriteBehind.class);
+        if (writeBehind != null) {
+            store = new WriteBehindStore<>(store, clazz.getSimpleName(), writeBehind.flushIntervalMillis(),
+                    writeBehind.flushThreshold(), writeBehind.maxPending());
         }
 
-        SimpleProxyHandler<T> proxyHandler = new SimpleProxyHandler<>(clazz, store);
-        Repository<T> repository = (Repository<T>) Proxy.newProxyInstance(
+        StoreExecutor executor = new StoreExecutor(clazz.getSimpleName());
+        SHUTDOWN.register(clazz.getSimpleName() + " (" + store.getClass().getSimpleName() + ")", store, executor);
+
+        SimpleProxyHandler<T> proxyHandler = new SimpleProxyHandler<>(clazz, store, executor);
+        return (Repository<T>) Proxy.newProxyInstance(
                 clazz.getClassLoader(),
                 new Class<?>[]{clazz},
                 proxyHandler
         );
-
-        Services.register(clazz, repository);
-
-        if (repository instanceof PlayerRepository) {
-            Bukkit.getPluginManager().registerEvents(new PlayerRepositoryListener<>((PlayerRepository<T>) repository), plugin);
-            Bukkit.getLogger().info("Bounded " + repository.getClass().getSimpleName() + " with player profiles.");
-        }
-
-        return repository;
     }
 
     private static boolean isMongoRepository(Class<?> clazz) {
-        try {
-            Class<?> mongoRepositoryClass = Class.forName("gg.supervisor.repository.MongoRepository");
-            return mongoRepositoryClass.isAssignableFrom(clazz);
-        } catch (ClassNotFoundException e) {
-            return false;
-        }
+        Class<?> mongoRepositoryClass = findClass("gg.supervisor.repository.mongo.MongoRepository");
+        return mongoRepositoryClass != null && mongoRepositoryClass.isAssignableFrom(clazz);
     }
 
     private static boolean isMongoPlayerRepository(Class<?> clazz) {
-        try {
-            Class<?> mongoPlayerRepositoryClass = Class.forName("gg.supervisor.repository.MongoPlayerRepository");
-            return mongoPlayerRepositoryClass.isAssignableFrom(clazz);
-        } catch (ClassNotFoundException e) {
-            return false;
-        }
+        Class<?> mongoPlayerRepositoryClass = findClass("gg.supervisor.repository.mongo.MongoPlayerRepository");
+        return mongoPlayerRepositoryClass != null && mongoPlayerRepositoryClass.isAssignableFrom(clazz);
     }
 
     private static boolean isItemStackRepository(Class<?> clazz) {
-        try {
-            Class<?> itemStackRepositoryClass = Class.forName("gg.supervisor.repository.itemstack.ItemStackRepository");
-            return itemStackRepositoryClass.isAssignableFrom(clazz);
-        } catch (ClassNotFoundException e) {
-            return false;
-        }
+        Class<?> itemStackRepositoryClass = findClass("gg.supervisor.repository.itemstack.ItemStackRepository");
+        return itemStackRepositoryClass != null && itemStackRepositoryClass.isAssignableFrom(clazz);
+    }
+
+    /**
+     * Looks up an optional module class by name, remembering misses so the class path is only searched once.
+     */
+    private static Class<?> findClass(String className) {
+        return OPTIONAL_CLASSES.computeIfAbsent(className, name -> {
+            try {
+                return Optional.of(Class.forName(name));
+            } catch (ClassNotFoundException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
     }
 
-    private static <T> Store<T> createMongoStoreInstance(String className, Object mongoConfig, Class<T> clazz) throws Exception {
-        Class<?> mongoStoreClass = Class.forName(className);
+    /**
+     * Creates a Mongo store through its {@code (MongoConfig, Class, Gson, String)} constructor, or through its
+     * {@code (MongoConfig, Class, Gson, EntityCache, String)} constructor if a cache is given. The string is
+     * the repository name, which names the collection.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Store<T> createMongoStoreInstance(String className, Object mongoConfig, Class<T> entityType, Gson gson, EntityCache<T> cache, String repositoryName) throws Exception {
         Class<?> mongoConfigClass = mongoConfig.getClass();
 
-        Constructor<?> constructor = null;
-        for (Constructor<?> c : mongoStoreClass.getConstructors()) {
-            Class<?>[] paramTypes = c.getParameterTypes();
-            if (paramTypes.length == 2 && paramTypes[0].isAssignableFrom(mongoConfigClass) && paramTypes[1] == Class.class) {
-                constructor = c;
-                break;
+        InstanceFactory<?> factory = STORE_FACTORIES.computeIfAbsent(className, name -> {
+            Class<?> mongoStoreClass = findClass(name);
+            if (mongoStoreClass == null) {
+                throw new IllegalStateException("Store class not found: " + name);
             }
-        }
-        if (constructor == null) {
-            throw new NoSuchMethodException("No suitable constructor found for " + className);
-        }
 
-        return (Store<T>) constructor.newInstance(mongoConfig, clazz);
+            for (Constructor<?> c : mongoStoreClass.getConstructors()) {
+                Class<?>[] paramTypes = c.getParameterTypes();
+                if (paramTypes.length == (cache != null ? 5 : 4) && paramTypes[0].isAssignableFrom(mongoConfigClass)
+                        && paramTypes[1] == Class.class && paramTypes[2] == Gson.class
+                        && (cache == null || paramTypes[3] == EntityCache.class)
+                        && paramTypes[paramTypes.length - 1] == String.class) {
+                    return InstanceFactory.of(c);
+                }
+            }
+            throw new IllegalStateException("No suitable constructor found for " + name);
+        });
+
+        return cache != null
+                ? (Store<T>) factory.newInstance(mongoConfig, entityType, gson, cache, repositoryName)
+                : (Store<T>) factory.newInstance(mongoConfig, entityType, gson, repositoryName);
     }
 
-    private static <T> Store<T> createItemStackStoreInstance(String className, Class<T> entityType, Plugin plugin) throws Exception {
-        Class<?> itemStackStoreClass = Class.forName(className);
+    @SuppressWarnings("unchecked")
+    private static <T> Store<T> createItemStackStoreInstance(String className, Class<T> entityType, Plugin plugin, Gson gson) throws Exception {
+        InstanceFactory<?> factory = STORE_FACTORIES.computeIfAbsent(className, name -> {
+            Class<?> itemStackStoreClass = findClass(name);
+            if (itemStackStoreClass == null) {
+                throw new IllegalStateException("Store class not found: " + name);
+            }
+
+            try {
+                return InstanceFactory.of(itemStackStoreClass.getConstructor(Class.class, Plugin.class, Gson.class));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("No suitable constructor found for " + name, e);
+            }
+        });
+
+        return (Store<T>) factory.newInstance(entityType, plugin, gson);
+    }
 
-        Constructor<?> constructor = itemStackStoreClass.getConstructor(Class.class, Plugin.class);
-        return (Store<T>) constructor.newInstance(entityType, plugin);
+    /**
+     * Creates (or returns the already registered) instance of a component, resolving its constructor
+     * dependencies from the registered services.
+     *
+     * @param clazz  The component class.
+     * @param plugin The owning plugin.
+     * @param <T>    The component type.
+     * @return The component instance, or {@code null} if the type cannot be instantiated.
+     * @throws Exception if the component or one of its dependencies fails to construct.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T loadComponent(Class<T> clazz, Plugin plugin) throws Exception {
+        return (T) createComponentInstance(clazz, plugin);
     }
 }
@@ -0,0 +1,100 @@
+package gg.supervisor.core.loader.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+/**
+ * The {@code InstanceFactory} wraps a constructor that has been resolved once into a {@link MethodHandle}.
+ *
+ * <p>The handle is adapted to a uniform {@code (Object[]) -> Object} shape, so every call goes through
+ * {@code invokeExact} without the access checks, argument boxing into a fresh array and exception wrapping
+ * that {@link Constructor#newInstance(Object...)} performs on each invocation. Factories are meant to be
+ * cached by the caller (for example in a {@link ClassValue}) and reused for every instance of the type.</p>
+ *
+ * @param <T> The type created by this factory.
+ */
+public final class InstanceFactory<T> {
+
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Class<T> type;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle handle;
+
+    private InstanceFactory(Class<T> type, Class<?>[] parameterTypes, MethodHandle handle) {
+        this.type = type;
+        this.parameterTypes = parameterTypes;
+        this.handle = handle;
+    }
+
+    /**
+     * Resolves the given constructor into a factory.
+     *
+     * @param constructor The constructor to bind.
+     * @param <T>         The declaring type of the constructor.
+     * @return A factory that invokes the constructor.
+     * @throws IllegalStateException if the constructor cannot be accessed.
+     */
+    public static <T> InstanceFactory<T> of(Constructor<T> constructor) {
+        // Suppresses access checks for non-public constructors when the module allows it
+        constructor.trySetAccessible();
+
+        try {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(GENERIC_TYPE);
+            return new InstanceFactory<>(constructor.getDeclaringClass(), parameterTypes, handle);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access constructor of " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * Resolves the no-argument constructor of the given type, including non-public ones.
+     *
+     * @param type The type to create.
+     * @param <T>  The type to create.
+     * @return A factory that invokes the no-argument constructor.
+     * @throws IllegalStateException if the type has no no-argument constructor.
+     */
+    public static <T> InstanceFactory<T> noArgs(Class<T> type) {
+        try {
+            return of(type.getDeclaredConstructor());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("No no-argument constructor found for class: " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Creates a new instance with the given constructor arguments.
+     *
+     * @param args The arguments, matching {@link #getParameterTypes()} in order and count.
+     * @return The new instance.
+     * @throws Exception any exception thrown by the constructor itself.
+     */
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... args) throws Exception {
+        try {
+            return (T) (Object) handle.invokeExact(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create instance of " + type.getName(), t);
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Class<?>[] getParameterTypes() {
+        return parameterTypes.clone();
+    }
+
+    public int getParameterCount() {
+        return parameterTypes.length;
+    }
+}
@@ -0,0 +1,91 @@
+package gg.supervisor.core.loader.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code ComponentIndex} reads the class list written by {@link ComponentIndexProcessor} at compile time.
+ *
+ * <p>Classes are loaded with {@code initialize = false}, so static initializers only run once the loader
+ * actually instantiates a component. If no index on the class path lists a class of the plugin's package, for
+ * example because only a shaded library ships one, {@link #load(ClassLoader, String)} returns {@code null} and
+ * the caller is expected to fall back to classpath scanning.</p>
+ */
+public final class ComponentIndex {
+
+    /**
+     * Location of the generated index inside the plugin jar.
+     */
+    public static final String INDEX_LOCATION = "META-INF/supervisor/components.index";
+
+    private ComponentIndex() {
+    }
+
+    /**
+     * Loads every indexed class that belongs to the given package.
+     *
+     * @param classLoader The plugin class loader used to locate the index and load the classes.
+     * @param packageName The root package of the plugin; entries outside of it are ignored.
+     * @return The indexed classes, or {@code null} if no index lists a class of the package.
+     */
+    public static List<Class<?>> load(ClassLoader classLoader, String packageName) {
+        Set<String> classNames = new LinkedHashSet<>();
+        boolean found = false;
+
+        try {
+            Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+            while (resources.hasMoreElements()) {
+                // An index of a shaded library does not mean the plugin was indexed
+                found |= read(resources.nextElement(), packageName, classNames);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (!found) {
+            return null;
+        }
+
+        List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.out.println("Couldn't locate class with the name " + className);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return {@code true} if the index lists at least one class of the package.
+     */
+    private static boolean read(URL url, String packageName, Set<String> classNames) throws IOException {
+        URLConnection connection = url.openConnection();
+        // Plugin jars are replaced on reload, a cached JarFile would serve the old index
+        connection.setUseCaches(false);
+
+        boolean matched = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#") && line.startsWith(packageName)) {
+                    classNames.add(line);
+                    matched = true;
+                }
+            }
+        }
+        return matched;
+    }
+}
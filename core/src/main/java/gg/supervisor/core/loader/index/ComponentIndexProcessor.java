@@ -0,0 +1,112 @@
+package gg.supervisor.core.loader.index;
+
+import gg.supervisor.core.annotation.Adapter;
+import gg.supervisor.core.annotation.Component;
+import gg.supervisor.core.annotation.Configuration;
+import gg.supervisor.core.repository.Repository;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The {@code ComponentIndexProcessor} is a compile-time annotation processor that records every class the
+ * {@code SupervisorLoader} cares about into {@link ComponentIndex#INDEX_LOCATION}.
+ *
+ * <p>A type is indexed when it is annotated with {@link Component}, {@link Configuration} or {@link Adapter},
+ * or when it is a subtype of {@link Repository}. At runtime the loader reads this list instead of scanning the
+ * plugin jar with Reflections, which avoids touching (and initializing) every class in the plugin package.</p>
+ *
+ * <p>Enable it by adding the core artifact to the {@code annotationProcessor} configuration of the plugin build.</p>
+ */
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    // Binary names collected across all processing rounds, sorted for reproducible jars
+    private final Set<String> indexed = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        TypeElement repositoryElement = processingEnv.getElementUtils().getTypeElement(Repository.class.getName());
+        TypeMirror repositoryType = repositoryElement != null
+                ? processingEnv.getTypeUtils().erasure(repositoryElement.asType())
+                : null;
+
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element, repositoryType);
+        }
+        return false;
+    }
+
+    private void collect(Element element, TypeMirror repositoryType) {
+        if (!(element instanceof TypeElement typeElement)) {
+            return;
+        }
+
+        if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.INTERFACE) {
+            if (isIndexed(typeElement, repositoryType)) {
+                indexed.add(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+            }
+        }
+
+        // Nested types are discovered by classpath scanning as well, so keep parity with it
+        for (Element enclosed : element.getEnclosedElements()) {
+            collect(enclosed, repositoryType);
+        }
+    }
+
+    private boolean isIndexed(TypeElement element, TypeMirror repositoryType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (name.equals(Component.class.getName())
+                    || name.equals(Configuration.class.getName())
+                    || name.equals(Adapter.class.getName())) {
+                return true;
+            }
+        }
+
+        return repositoryType != null
+                && processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(element.asType()), repositoryType);
+    }
+
+    private void writeIndex() {
+        if (indexed.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.INDEX_LOCATION);
+            try (Writer writer = resource.openWriter()) {
+                for (String className : indexed) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write component index: " + e.getMessage());
+        }
+    }
+}
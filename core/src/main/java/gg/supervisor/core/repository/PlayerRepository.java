@@ -1,4 +1,44 @@
 package gg.supervisor.core.repository;
 
+import gg.supervisor.core.repository.cache.CacheStats;
+import gg.supervisor.core.repository.store.SaveStats;
+
+import java.util.concurrent.CompletableFuture;
+
 public interface PlayerRepository<T> extends Repository<T> {
+
+    /**
+     * Returns the player's profile only if it is cached, without reading storage, so it may be called on
+     * the server thread.
+     *
+     * @return The cached profile, or {@code null} if it is not cached.
+     */
+    T findIfCached(String key);
+
+    /**
+     * Keeps the player's profile in the cache until {@link #unpin(String)} is called. Profiles of online
+     * players are pinned by the repository's listener.
+     */
+    void pin(String key);
+
+    /**
+     * Makes the player's profile evictable again, for example after the player quit.
+     */
+    void unpin(String key);
+
+    /**
+     * Drops the player's profile from the cache on the repository's I/O executor, after any earlier
+     * asynchronous operation on the key. Pinned profiles are kept. The stored profile is not changed.
+     */
+    CompletableFuture<Void> evictAsync(String key);
+
+    /**
+     * @return The hit, miss and eviction counters of the profile cache, see {@link gg.supervisor.core.annotation.Cache}.
+     */
+    CacheStats cacheStats();
+
+    /**
+     * @return How many saves were written and how many were skipped because the profile had not changed.
+     */
+    SaveStats saveStats();
 }
@@ -1,6 +1,9 @@
 package gg.supervisor.core.repository;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface Repository<T> {
 
@@ -15,4 +18,63 @@ public interface Repository<T> {
     Collection<T> values();
 
     Collection<String> keys();
+
+    /**
+     * Counts the stored entities without loading them.
+     */
+    long count();
+
+    /**
+     * Streams every entity, reading them lazily instead of loading the whole store like {@link #values()}.
+     * The stream must be closed, for example with try-with-resources.
+     */
+    Stream<T> stream();
+
+    /**
+     * Streams every entity together with its key, see {@link #stream()}.
+     */
+    Stream<Map.Entry<String, T>> entries();
+
+    /**
+     * Saves several entities at once, which the store writes in one batch rather than one write per entity.
+     */
+    void saveAll(Map<String, T> entities);
+
+    /**
+     * Loads several entities at once. Keys without an entity are left out of the result.
+     */
+    Map<String, T> findAll(Collection<String> keys);
+
+    /**
+     * Deletes several entities at once.
+     */
+    void deleteAll(Collection<String> keys);
+
+    /**
+     * Loads an entity on the repository's I/O executor instead of the calling thread.
+     * Use {@link gg.supervisor.core.util.MainThread} to continue on the server thread.
+     */
+    CompletableFuture<T> findAsync(String key);
+
+    /**
+     * Saves an entity on the repository's I/O executor. Saves of the same key complete in call order.
+     */
+    CompletableFuture<Void> saveAsync(String key, T type);
+
+    /**
+     * Deletes an entity on the repository's I/O executor.
+     */
+    CompletableFuture<Void> deleteAsync(String key);
+
+    /**
+     * Loads every entity on the repository's I/O executor.
+     */
+    CompletableFuture<Collection<T>> valuesAsync();
+
+    /**
+     * Writes the buffered changes of one key now, on the repository's I/O executor, after any earlier
+     * asynchronous operation on the key. Only repositories annotated with
+     * {@link gg.supervisor.core.annotation.WriteBehind} buffer changes.
+     */
+    CompletableFuture<Void> flushAsync(String key);
 }
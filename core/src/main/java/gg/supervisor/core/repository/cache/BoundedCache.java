@@ -0,0 +1,409 @@
+package gg.supervisor.core.repository.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A size-bounded cache with frequency-aware eviction, modelled on W-TinyLFU.
+ *
+ * <p>New entries enter a small LRU window (1% of the maximum size). Entries leaving the window compete with
+ * the least recently used entry of the main area: the one a {@link FrequencySketch} has seen more often
+ * recently stays, the other is evicted. The main area is a segmented LRU, where entries accessed again are
+ * promoted from probation to a protected segment (80% of the main area). A burst of one-off lookups, such
+ * as a scan over offline players, therefore cannot push out the profiles that are used all the time.</p>
+ *
+ * <p>Entries that were not accessed for the expiry time are dropped, found either on lookup or by a sweep
+ * whenever an entry is added. Pinned entries are kept outside of all segments: they do not count towards
+ * the maximum size and never expire. With a maximum size of {@code 0} only pinned entries are kept.</p>
+ *
+ * <p>Lookups do not block: the value is read from a concurrent map, and the access is recorded in the
+ * eviction order only if the policy lock is free, otherwise it is skipped, which only makes the order
+ * slightly less precise. Additions, removals and pinning take the lock.</p>
+ *
+ * @param <T> The type of the cached entities.
+ */
+public final class BoundedCache<T> implements EntityCache<T> {
+
+    private enum Segment {
+        WINDOW, PROBATION, PROTECTED, PINNED
+    }
+
+    private static final class Node<T> {
+        private final String key;
+        private volatile T value;
+        private volatile long accessTime;
+        private volatile boolean pinned;
+
+        // Guarded by the policy lock, null once the node is no longer cached
+        private Segment segment;
+
+        private Node(String key, T value, long accessTime) {
+            this.key = key;
+            this.value = value;
+            this.accessTime = accessTime;
+        }
+    }
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int mainMaximum;
+    private final int protectedMaximum;
+    private final long expireAfterAccessNanos;
+
+    private final Map<String, Node<T>> data = new ConcurrentHashMap<>();
+    private final Set<String> pinnedKeys = ConcurrentHashMap.newKeySet();
+
+    // Guards the segments and the sketch. The segments are in access order, least recently used first
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Node<T>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Node<T>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Node<T>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private volatile Consumer<String> evictionListener = key -> {
+    };
+
+    /**
+     * @param maximumSize       The maximum number of unpinned entries, {@code 0} to keep only pinned entries.
+     * @param expireAfterAccess The time an unpinned entry may go unused, or {@code 0} to never expire entries.
+     * @param unit              The unit of the expiry time.
+     */
+    public BoundedCache(int maximumSize, long expireAfterAccess, TimeUnit unit) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("The maximum size cannot be negative, was " + maximumSize);
+        }
+        if (expireAfterAccess < 0) {
+            throw new IllegalArgumentException("The expiry time cannot be negative, was " + expireAfterAccess);
+        }
+
+        this.maximumSize = maximumSize;
+        this.windowMaximum = maximumSize == 0 ? 0 : Math.max(1, maximumSize / 100);
+        this.mainMaximum = maximumSize - windowMaximum;
+        this.protectedMaximum = (int) (mainMaximum * 0.8);
+        this.expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public T get(String key) {
+        Node<T> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        long now = System.nanoTime();
+        if (isExpired(node, now)) {
+            lock.lock();
+            try {
+                if (isExpired(node, now) && data.remove(key, node)) {
+                    unlink(node);
+                    expired(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+            misses.increment();
+            return null;
+        }
+
+        node.accessTime = now;
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    @Override
+    public T peek(String key) {
+        Node<T> node = data.get(key);
+        return node != null ? node.value : null;
+    }
+
+    @Override
+    public void put(String key, T value) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Node<T> node = data.get(key);
+            if (node != null) {
+                node.value = value;
+                node.accessTime = now;
+                onAccess(node);
+            } else {
+                add(new Node<>(key, value, now), now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T putIfAbsent(String key, T value) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Node<T> node = data.get(key);
+            if (node != null && !isExpired(node, now)) {
+                return node.value;
+            }
+            if (node != null && data.remove(key, node)) {
+                unlink(node);
+                expired(key);
+            }
+            add(new Node<>(key, value, now), now);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.lock();
+        try {
+            Node<T> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean evict(String key) {
+        lock.lock();
+        try {
+            if (pinnedKeys.contains(key)) {
+                return false;
+            }
+            Node<T> node = data.remove(key);
+            if (node == null) {
+                return false;
+            }
+            unlink(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        Node<T> node = data.get(key);
+        return node != null && !isExpired(node, System.nanoTime());
+    }
+
+    @Override
+    public void pin(String key) {
+        lock.lock();
+        try {
+            pinnedKeys.add(key);
+            Node<T> node = data.get(key);
+            if (node != null && !node.pinned) {
+                unlink(node);
+                node.pinned = true;
+                node.segment = Segment.PINNED;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void unpin(String key) {
+        lock.lock();
+        try {
+            pinnedKeys.remove(key);
+            Node<T> node = data.get(key);
+            if (node != null && node.pinned) {
+                node.pinned = false;
+                node.accessTime = System.nanoTime();
+                node.segment = Segment.WINDOW;
+                window.put(key, node);
+                evict();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setEvictionListener(Consumer<String> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public Map<String, T> asMap() {
+        Map<String, T> copy = new HashMap<>(data.size());
+        data.forEach((key, node) -> copy.put(key, node.value));
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), data.size(), pinnedKeys.size());
+    }
+
+    private boolean isExpired(Node<T> node, long now) {
+        return expireAfterAccessNanos > 0 && !node.pinned && now - node.accessTime > expireAfterAccessNanos;
+    }
+
+    private void add(Node<T> node, long now) {
+        data.put(node.key, node);
+        sketch.increment(node.key);
+        if (pinnedKeys.contains(node.key)) {
+            node.pinned = true;
+            node.segment = Segment.PINNED;
+        } else {
+            node.segment = Segment.WINDOW;
+            window.put(node.key, node);
+        }
+
+        expire(now);
+        evict();
+    }
+
+    private void onAccess(Node<T> node) {
+        if (node.segment == null) {
+            return; // Removed concurrently
+        }
+
+        sketch.increment(node.key);
+        switch (node.segment) {
+            case WINDOW -> window.get(node.key);
+            case PROTECTED -> protectedSegment.get(node.key);
+            case PROBATION -> {
+                // Accessed again while on probation, promote it and demote the protected segment's oldest entry
+                probation.remove(node.key);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.put(node.key, node);
+                if (protectedSegment.size() > protectedMaximum) {
+                    Node<T> demoted = removeFirst(protectedSegment);
+                    demoted.segment = Segment.PROBATION;
+                    probation.put(demoted.key, demoted);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void evict() {
+        // Entries leaving the window are only admitted to the main area if they are used more than its victim
+        while (window.size() > windowMaximum) {
+            Node<T> candidate = removeFirst(window);
+            if (probation.size() + protectedSegment.size() < mainMaximum) {
+                candidate.segment = Segment.PROBATION;
+                probation.put(candidate.key, candidate);
+                continue;
+            }
+
+            Node<T> victim = first(probation);
+            if (victim == null) {
+                victim = first(protectedSegment);
+            }
+            if (victim != null && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                discard(victim);
+                candidate.segment = Segment.PROBATION;
+                probation.put(candidate.key, candidate);
+            } else {
+                candidate.segment = null;
+                discard(candidate);
+            }
+        }
+
+        while (window.size() + probation.size() + protectedSegment.size() > maximumSize) {
+            Node<T> victim = first(probation);
+            if (victim == null) {
+                victim = first(protectedSegment);
+            }
+            if (victim == null) {
+                victim = first(window);
+            }
+            discard(victim);
+        }
+    }
+
+    private void expire(long now) {
+        if (expireAfterAccessNanos <= 0) {
+            return;
+        }
+        expireSegment(window, now);
+        expireSegment(probation, now);
+        expireSegment(protectedSegment, now);
+    }
+
+    private void expireSegment(LinkedHashMap<String, Node<T>> segment, long now) {
+        // Segments are in access order, so the sweep stops at the first entry that is still fresh
+        Node<T> node;
+        while ((node = first(segment)) != null && isExpired(node, now)) {
+            unlink(node);
+            if (data.remove(node.key, node)) {
+                expired(node.key);
+            }
+        }
+    }
+
+    private void discard(Node<T> node) {
+        unlink(node);
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+            evictionListener.accept(node.key);
+        }
+    }
+
+    private void expired(String key) {
+        expirations.increment();
+        evictionListener.accept(key);
+    }
+
+    private void unlink(Node<T> node) {
+        if (node.segment != null) {
+            switch (node.segment) {
+                case WINDOW -> window.remove(node.key, node);
+                case PROBATION -> probation.remove(node.key, node);
+                case PROTECTED -> protectedSegment.remove(node.key, node);
+                default -> {
+                }
+            }
+        }
+        node.segment = null;
+    }
+
+    private static <T> Node<T> first(LinkedHashMap<String, Node<T>> segment) {
+        Iterator<Node<T>> iterator = segment.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static <T> Node<T> removeFirst(LinkedHashMap<String, Node<T>> segment) {
+        Iterator<Node<T>> iterator = segment.values().iterator();
+        Node<T> node = iterator.next();
+        iterator.remove();
+        return node;
+    }
+}
@@ -0,0 +1,67 @@
+package gg.supervisor.core.repository.cache;
+
+/**
+ * An immutable snapshot of a cache's counters since it was created.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+    private final int size;
+    private final int pinnedCount;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount, int size, int pinnedCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+        this.size = size;
+        this.pinnedCount = pinnedCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return The number of entries removed to stay within the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return The number of entries removed because they were not accessed for too long.
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPinnedCount() {
+        return pinnedCount;
+    }
+
+    /**
+     * @return The ratio of lookups that found a cached entry, or {@code 1} if there were none.
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries (%d pinned), %d hits, %d misses (%.1f%% hit rate), %d evicted, %d expired",
+                size, pinnedCount, hitCount, missCount, getHitRate() * 100, evictionCount, expirationCount);
+    }
+}
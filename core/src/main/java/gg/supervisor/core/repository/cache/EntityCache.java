@@ -0,0 +1,120 @@
+package gg.supervisor.core.repository.cache;
+
+import gg.supervisor.core.annotation.Cache;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The in-memory cache of a store that loads entities on demand, such as the player stores.
+ *
+ * <p>Implementations decide which entries to keep: {@link BoundedCache} keeps a maximum number of entries and
+ * expires idle ones, {@link UnboundedCache} keeps everything. Pinned keys, usually online players, are never
+ * evicted or expired until they are unpinned. All methods are safe to call from any thread.</p>
+ *
+ * @param <T> The type of the cached entities.
+ */
+public interface EntityCache<T> {
+
+    /**
+     * Creates the cache selected by a repository's {@link Cache} annotation.
+     *
+     * @param cache The annotation, or {@code null} for the defaults.
+     * @return A new cache.
+     * @throws IllegalArgumentException if the annotation's expiry time is negative.
+     */
+    static <T> EntityCache<T> create(Cache cache) {
+        long maximumSize = cache != null ? cache.maximumSize() : Cache.DEFAULT_MAXIMUM_SIZE;
+        long expireAfterAccess = cache != null ? cache.expireAfterAccessSeconds() : Cache.DEFAULT_EXPIRE_AFTER_ACCESS_SECONDS;
+        if (expireAfterAccess < 0) {
+            throw new IllegalArgumentException("@Cache(expireAfterAccessSeconds = " + expireAfterAccess
+                    + ") cannot be negative, use 0 to never expire profiles");
+        }
+        if (maximumSize < 0) {
+            return new UnboundedCache<>();
+        }
+        return new BoundedCache<>((int) Math.min(maximumSize, Integer.MAX_VALUE), expireAfterAccess, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Looks up an entry and counts it as a hit or a miss.
+     *
+     * @param key The key.
+     * @return The cached value, or {@code null} if it is not cached.
+     */
+    T get(String key);
+
+    /**
+     * Looks up an entry without counting it or changing its recency.
+     *
+     * @param key The key.
+     * @return The cached value, or {@code null} if it is not cached.
+     */
+    T peek(String key);
+
+    /**
+     * Caches a value, replacing the previous one. May evict other entries.
+     */
+    void put(String key, T value);
+
+    /**
+     * Caches a value unless the key is already cached.
+     *
+     * @return The value that was already cached, or {@code null} if the given value was added.
+     */
+    T putIfAbsent(String key, T value);
+
+    /**
+     * Removes an entry, pinned or not. The key stays pinned if it was.
+     */
+    void remove(String key);
+
+    /**
+     * Removes an entry unless its key is pinned, for example once a player who quit has been saved.
+     *
+     * @return {@code true} if the entry was removed.
+     */
+    boolean evict(String key);
+
+    /**
+     * @return {@code true} if the key is cached, without counting a hit or miss.
+     */
+    boolean containsKey(String key);
+
+    /**
+     * Keeps the key's entry, present or loaded later, in the cache until {@link #unpin(String)} is called.
+     */
+    void pin(String key);
+
+    /**
+     * Makes the key's entry evictable again. It counts as freshly accessed.
+     */
+    void unpin(String key);
+
+    /**
+     * Sets the callback for entries the cache drops on its own, because it is full or the entry expired, so the
+     * store can release what it keeps per cached entity. It is not called for {@link #remove(String)} and
+     * {@link #evict(String)}, whose callers know the key is gone. The callback may run while the cache is
+     * locked: it must be quick and must not use the cache. Caches that never drop entries ignore it.
+     *
+     * @param listener Receives the key of each dropped entry.
+     */
+    default void setEvictionListener(Consumer<String> listener) {
+    }
+
+    /**
+     * @return A snapshot copy of every cached entry.
+     */
+    Map<String, T> asMap();
+
+    /**
+     * @return The number of cached entries.
+     */
+    int size();
+
+    /**
+     * @return The counters collected since the cache was created.
+     */
+    CacheStats stats();
+}
@@ -0,0 +1,76 @@
+package gg.supervisor.core.repository.cache;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often each key was accessed recently.
+ *
+ * <p>Each key maps to four counters, one per hash function; the estimate is the smallest of them. The table
+ * holds sixteen counters per cache entry, one byte each, so a cache of 10,000 entries carries a 256 KB
+ * sketch. Once the number of recorded accesses reaches ten times the cache size, every counter is halved, so
+ * keys that were popular long ago lose their advantage over keys that are popular now. Not thread-safe, the
+ * owning cache guards it with its policy lock.</p>
+ */
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int resetThreshold;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int entries = Math.max(16, Math.min(maximumSize, 1 << 20));
+        // Sixteen counters per entry: between two resets every counter then sees about two and a half
+        // increments on average, so collisions rarely lift a one-off key to the level of a popular one
+        int size = Integer.highestOneBit(entries - 1) << 5;
+        this.counters = new byte[size];
+        this.mask = size - 1;
+        this.resetThreshold = entries * 10;
+    }
+
+    /**
+     * @return The estimated number of recent accesses of the key, between 0 and 15.
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int seed : SEEDS) {
+            frequency = Math.min(frequency, counters[index(hash, seed)]);
+        }
+        return frequency;
+    }
+
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int seed : SEEDS) {
+            int index = index(hash, seed);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= resetThreshold) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+        additions >>>= 1;
+    }
+
+    private int index(int hash, int seed) {
+        int h = (hash ^ seed) * 0x45D9F3B;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash = (hash ^ (hash >>> 16)) * 0x7FEB352D;
+        return hash ^ (hash >>> 15);
+    }
+}
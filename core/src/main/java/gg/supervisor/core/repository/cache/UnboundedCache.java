@@ -0,0 +1,81 @@
+package gg.supervisor.core.repository.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache that keeps every entry until it is removed, with hit and miss counters.
+ *
+ * @param <T> The type of the cached entities.
+ */
+public final class UnboundedCache<T> implements EntityCache<T> {
+
+    private final Map<String, T> data = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pinned = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public T get(String key) {
+        T value = data.get(key);
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    @Override
+    public T peek(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public void put(String key, T value) {
+        data.put(key, value);
+    }
+
+    @Override
+    public T putIfAbsent(String key, T value) {
+        return data.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void remove(String key) {
+        data.remove(key);
+    }
+
+    @Override
+    public boolean evict(String key) {
+        return !pinned.containsKey(key) && data.remove(key) != null;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public void pin(String key) {
+        pinned.put(key, Boolean.TRUE); // Only counted, nothing is evicted anyway
+    }
+
+    @Override
+    public void unpin(String key) {
+        pinned.remove(key);
+    }
+
+    @Override
+    public Map<String, T> asMap() {
+        return new HashMap<>(data);
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, data.size(), pinned.size());
+    }
+}
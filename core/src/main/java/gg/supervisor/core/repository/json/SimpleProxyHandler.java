@@ -1,10 +1,22 @@
 package gg.supervisor.core.repository.json;
 
 import gg.supervisor.core.adapters.handler.AbstractProxyHandler;
+import gg.supervisor.core.repository.query.QueryMethod;
 import gg.supervisor.core.repository.store.Store;
+import gg.supervisor.core.repository.store.StoreExecutor;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The {@code JsonProxyHandler} class serves as a dynamic proxy handler for repositories that
@@ -19,30 +31,111 @@ import java.util.ArrayList;
  * <p><strong>Key Features:</strong></p>
  * <ul>
  *     <li>Implements core CRUD operations such as finding, saving, deleting, and checking data existence.</li>
+ *     <li>Passes batch operations ({@code saveAll}, {@code findAll}, {@code deleteAll}) to the store in one call.</li>
  *     <li>Supports dynamically fetching all keys and values stored in the JSON-based store.</li>
+ *     <li>Streams the store lazily through {@code stream()} and {@code entries()}.</li>
+ *     <li>Runs the {@code *Async} operations on the store's {@link StoreExecutor}, never on the calling thread.</li>
  *     <li>Facilitates abstraction of data access logic, promoting separation of concerns and flexibility in data management.</li>
+ *     <li>Supports {@code default} methods on the repository interface, so repositories can declare their own helpers.</li>
+ *     <li>Supports derived query methods such as {@code findByClanName(String)} or {@code countByRank(String)},
+ *     see {@link QueryMethod}.</li>
  * </ul>
  *
+ * <p>Every method of the repository interface is resolved once, when the handler is created, into a
+ * {@link MethodHandle} bound to the store operation or to the interface's default implementation.
+ * A call then costs a table lookup and an exact handle invocation instead of a switch on the method name.
+ * Query methods are parsed at the same time, so a misspelled property fails when the repository is created,
+ * and the store is told which properties to index before the first query runs.</p>
+ *
  * @param <T> The type of the entities managed by the repository.
  */
 public class SimpleProxyHandler<T> extends AbstractProxyHandler<T> {
 
-    private final Store<T> store;
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // Uniform shape of every dispatch entry: (proxy, arguments) -> result
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType OPERATION_TYPE = MethodType.methodType(Object.class, Store.class, Object[].class);
+    private static final MethodType ASYNC_OPERATION_TYPE = MethodType.methodType(Object.class, StoreExecutor.class, Store.class, Object[].class);
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    // Store operations by method name and parameter count
+    private static final Map<String, MethodHandle> OPERATIONS = new HashMap<>();
+    private static final Map<String, MethodHandle> ASYNC_OPERATIONS = new HashMap<>();
+    private static final MethodHandle UNSUPPORTED;
+    private static final MethodHandle QUERY;
+    private static final Map<Method, MethodHandle> OBJECT_METHODS = new HashMap<>();
+    private static final Method TO_STRING;
+
+    static {
+        try {
+            OPERATIONS.put("find/1", operation("find"));
+            OPERATIONS.put("save/2", operation("save"));
+            OPERATIONS.put("delete/1", operation("delete"));
+            OPERATIONS.put("containsKey/1", operation("containsKey"));
+            OPERATIONS.put("values/0", operation("values"));
+            OPERATIONS.put("keys/0", operation("keys"));
+            OPERATIONS.put("count/0", operation("count"));
+            OPERATIONS.put("stream/0", operation("stream"));
+            OPERATIONS.put("entries/0", operation("entries"));
+            OPERATIONS.put("saveAll/1", operation("saveAll"));
+            OPERATIONS.put("findAll/1", operation("findAll"));
+            OPERATIONS.put("deleteAll/1", operation("deleteAll"));
+            OPERATIONS.put("findIfCached/1", operation("findIfCached"));
+            OPERATIONS.put("pin/1", operation("pin"));
+            OPERATIONS.put("unpin/1", operation("unpin"));
+            OPERATIONS.put("cacheStats/0", operation("cacheStats"));
+            OPERATIONS.put("saveStats/0", operation("saveStats"));
+            ASYNC_OPERATIONS.put("findAsync/1", asyncOperation("findAsync"));
+            ASYNC_OPERATIONS.put("saveAsync/2", asyncOperation("saveAsync"));
+            ASYNC_OPERATIONS.put("deleteAsync/1", asyncOperation("deleteAsync"));
+            ASYNC_OPERATIONS.put("valuesAsync/0", asyncOperation("valuesAsync"));
+            ASYNC_OPERATIONS.put("flushAsync/1", asyncOperation("flushAsync"));
+            ASYNC_OPERATIONS.put("evictAsync/1", asyncOperation("evictAsync"));
+
+            QUERY = LOOKUP.findVirtual(QueryMethod.class, "execute", OPERATION_TYPE);
+            UNSUPPORTED = LOOKUP.findStatic(SimpleProxyHandler.class, "unsupported",
+                    MethodType.methodType(Object.class, String.class, Object.class, Object[].class));
+
+            // Identity semantics for the proxy itself, these used to fail as unsupported operations
+            OBJECT_METHODS.put(Object.class.getMethod("equals", Object.class), LOOKUP.findStatic(SimpleProxyHandler.class, "proxyEquals", INVOKER_TYPE));
+            OBJECT_METHODS.put(Object.class.getMethod("hashCode"), LOOKUP.findStatic(SimpleProxyHandler.class, "proxyHashCode", INVOKER_TYPE));
+            TO_STRING = Object.class.getMethod("toString");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Every method of the repository interface mapped to its bound implementation
+    private final Map<Method, MethodHandle> dispatch;
 
     /**
      * Constructs a new {@code JsonProxyHandler} for a specified repository interface and store.
+     * Asynchronous operations run on a new {@link StoreExecutor} with the default settings.
      *
      * @param serviceInterface The repository interface that this handler proxies.
      * @param store            The {@link Store} instance that provides persistence for the entities.
      */
     public SimpleProxyHandler(Class<T> serviceInterface, Store<T> store) {
+        this(serviceInterface, store, new StoreExecutor(serviceInterface.getSimpleName()));
+    }
+
+    /**
+     * Constructs a new {@code JsonProxyHandler} whose asynchronous operations run on the given executor.
+     *
+     * @param serviceInterface The repository interface that this handler proxies.
+     * @param store            The {@link Store} instance that provides persistence for the entities.
+     * @param executor         The I/O executor of the store.
+     */
+    public SimpleProxyHandler(Class<T> serviceInterface, Store<T> store, StoreExecutor executor) {
         super(serviceInterface, store);
-        this.store = store;
+        this.dispatch = createDispatchTable(serviceInterface, store, executor, rawType(entityType));
     }
 
     /**
      * Handles method invocations for repository interfaces by routing them to corresponding
-     * CRUD operations on the underlying {@link Store}.
+     * CRUD operations on the underlying {@link Store}, or to the interface's default implementation.
      *
      * @param proxy  The proxy instance that the method was invoked on.
      * @param method The method that was invoked.
@@ -52,42 +145,221 @@ public class SimpleProxyHandler<T> extends AbstractProxyHandler<T> {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        // Switch based on the method name to determine the appropriate operation to perform.
-        switch (method.getName()) {
-            case "find":
-                // Fetch the entity from the store by its key.
-                final String key = (String) args[0];
-                return store.get(key);
-
-            case "save":
-                // Save or update the entity in the store with the given key-value pair.
-                final String saveKey = (String) args[0];
-                final T entity = (T) args[1];
-                store.save(saveKey, entity);
-                return null;
-
-            case "delete":
-                // Delete the entity from the store by its key.
-                final String keyToDelete = (String) args[0];
-                store.delete(keyToDelete);
-                return null;
-
-            case "containsKey":
-                // Check if the specified key exists in the store.
-                final String keyToCheck = (String) args[0];
-                return store.containsKey(keyToCheck);
-
-            case "values":
-                // Retrieve all values stored in the store as a list.
-                return new ArrayList<>(store.values().values());
-
-            case "keys":
-                // Retrieve all keys currently present in the store as a list.
-                return new ArrayList<>(store.values().keySet());
-
-            default:
-                // If the method name doesn't match any known operations, throw an exception.
-                throw new UnsupportedOperationException("Unsupported operation: " + method.getName());
+        MethodHandle handle = dispatch.get(method);
+        if (handle == null) {
+            throw new UnsupportedOperationException("Unsupported operation: " + method.getName());
+        }
+        Object[] arguments = args != null ? args : NO_ARGS;
+        return (Object) handle.invokeExact(proxy, arguments);
+    }
+
+    private Map<Method, MethodHandle> createDispatchTable(Class<T> serviceInterface, Store<T> store, StoreExecutor executor, Class<?> entityClass) {
+        Map<Method, MethodHandle> table = new HashMap<>(OBJECT_METHODS);
+        String description = serviceInterface.getSimpleName() + "[" + store.getClass().getSimpleName() + "]";
+        table.put(TO_STRING, MethodHandles.dropArguments(MethodHandles.constant(Object.class, description), 0, Object.class, Object[].class));
+
+        for (Method method : serviceInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+
+            try {
+                table.put(method, bind(method, store, executor, entityClass));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot bind " + method + " of " + serviceInterface.getName(), e);
+            }
+        }
+        return table;
+    }
+
+    private static MethodHandle bind(Method method, Store<?> store, StoreExecutor executor, Class<?> entityClass) throws IllegalAccessException {
+        if (method.isDefault()) {
+            // Calls the interface's own implementation, never the proxy, so it cannot recurse into invoke
+            Class<?> declaringClass = method.getDeclaringClass();
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, LOOKUP);
+            return lookup.unreflectSpecial(method, declaringClass)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        }
+
+        String signature = method.getName() + "/" + method.getParameterCount();
+        MethodHandle operation = OPERATIONS.get(signature);
+        if (operation != null) {
+            return MethodHandles.dropArguments(operation.bindTo(store), 0, Object.class);
+        }
+
+        MethodHandle asyncOperation = ASYNC_OPERATIONS.get(signature);
+        if (asyncOperation != null) {
+            return MethodHandles.dropArguments(MethodHandles.insertArguments(asyncOperation, 0, executor, store), 0, Object.class);
+        }
+
+        QueryMethod query = QueryMethod.parse(method, entityClass);
+        if (query != null) {
+            store.registerIndex(query.getProperty(), query.getOperator().isRange());
+            return MethodHandles.dropArguments(MethodHandles.insertArguments(QUERY, 0, query, store), 0, Object.class);
+        }
+        return MethodHandles.insertArguments(UNSUPPORTED, 0, method.getName());
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz;
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return (Class<?>) parameterized.getRawType();
         }
+        return Object.class;
+    }
+
+    private static MethodHandle operation(String name) throws ReflectiveOperationException {
+        return LOOKUP.findStatic(SimpleProxyHandler.class, name, OPERATION_TYPE);
+    }
+
+    private static MethodHandle asyncOperation(String name) throws ReflectiveOperationException {
+        return LOOKUP.findStatic(SimpleProxyHandler.class, name, ASYNC_OPERATION_TYPE);
+    }
+
+    // Fetch the entity from the store by its key.
+    private static Object find(Store<?> store, Object[] args) {
+        return store.get((String) args[0]);
+    }
+
+    // Save or update the entity in the store with the given key-value pair.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object save(Store store, Object[] args) {
+        store.save((String) args[0], args[1]);
+        return null;
+    }
+
+    // Delete the entity from the store by its key.
+    private static Object delete(Store<?> store, Object[] args) {
+        store.delete((String) args[0]);
+        return null;
+    }
+
+    // Check if the specified key exists in the store.
+    private static Object containsKey(Store<?> store, Object[] args) {
+        return store.containsKey((String) args[0]);
+    }
+
+    // Retrieve all values stored in the store as a list.
+    private static Object values(Store<?> store, Object[] args) {
+        return new ArrayList<>(store.values().values());
+    }
+
+    // Retrieve all keys currently present in the store, without loading the values.
+    private static Object keys(Store<?> store, Object[] args) {
+        return store.keys();
+    }
+
+    // Count the entities without loading them.
+    private static Object count(Store<?> store, Object[] args) {
+        return store.count();
+    }
+
+    // Stream the values lazily, closing the stream closes the store's cursor.
+    private static Object stream(Store<?> store, Object[] args) {
+        return store.stream().map(Map.Entry::getValue);
+    }
+
+    // Stream the key-value pairs lazily.
+    private static Object entries(Store<?> store, Object[] args) {
+        return store.stream();
+    }
+
+    // Save every entity of the map in one batch.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object saveAll(Store store, Object[] args) {
+        store.saveAll((Map) args[0]);
+        return null;
+    }
+
+    // Fetch the entities of every existing key in one batch.
+    @SuppressWarnings("unchecked")
+    private static Object findAll(Store<?> store, Object[] args) {
+        return store.getAll((Collection<String>) args[0]);
+    }
+
+    // Delete the entities of every key in one batch.
+    @SuppressWarnings("unchecked")
+    private static Object deleteAll(Store<?> store, Object[] args) {
+        store.deleteAll((Collection<String>) args[0]);
+        return null;
+    }
+
+    // The key's entity if it is in the store's cache, without reading storage.
+    private static Object findIfCached(Store<?> store, Object[] args) {
+        return store.getIfCached((String) args[0]);
+    }
+
+    // Keep the key's entity in the store's cache until it is unpinned.
+    private static Object pin(Store<?> store, Object[] args) {
+        store.pin((String) args[0]);
+        return null;
+    }
+
+    // Make the key's entity evictable again.
+    private static Object unpin(Store<?> store, Object[] args) {
+        store.unpin((String) args[0]);
+        return null;
+    }
+
+    // Snapshot of the store's cache counters.
+    private static Object cacheStats(Store<?> store, Object[] args) {
+        return store.getCacheStats();
+    }
+
+    // Snapshot of the store's written and skipped saves.
+    private static Object saveStats(Store<?> store, Object[] args) {
+        return store.getSaveStats();
+    }
+
+    // Fetch the entity on the key's I/O lane.
+    private static Object findAsync(StoreExecutor executor, Store<?> store, Object[] args) {
+        String key = (String) args[0];
+        return store.getAsync(key, executor.forKey(key));
+    }
+
+    // Save the entity on the key's I/O lane, after any earlier operation on the same key.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object saveAsync(StoreExecutor executor, Store store, Object[] args) {
+        String key = (String) args[0];
+        return store.saveAsync(key, args[1], executor.forKey(key));
+    }
+
+    // Delete the entity on the key's I/O lane.
+    private static Object deleteAsync(StoreExecutor executor, Store<?> store, Object[] args) {
+        String key = (String) args[0];
+        return store.deleteAsync(key, executor.forKey(key));
+    }
+
+    // Retrieve all values as a list on the next I/O lane.
+    private static Object valuesAsync(StoreExecutor executor, Store<?> store, Object[] args) {
+        return store.valuesAsync(executor).thenApply(values -> (Collection<?>) new ArrayList<>(values.values()));
+    }
+
+    // Write the buffered change of the key on its I/O lane.
+    private static Object flushAsync(StoreExecutor executor, Store<?> store, Object[] args) {
+        String key = (String) args[0];
+        return CompletableFuture.runAsync(() -> store.flush(key), executor.forKey(key));
+    }
+
+    // Drop the key's cached entity on its I/O lane, after the operations queued before it.
+    private static Object evictAsync(StoreExecutor executor, Store<?> store, Object[] args) {
+        String key = (String) args[0];
+        return CompletableFuture.runAsync(() -> store.evict(key), executor.forKey(key));
+    }
+
+    private static Object unsupported(String name, Object proxy, Object[] args) {
+        // Abstract methods that do not match a store operation
+        throw new UnsupportedOperationException("Unsupported operation: " + name);
+    }
+
+    private static Object proxyEquals(Object proxy, Object[] args) {
+        return proxy == args[0];
+    }
+
+    private static Object proxyHashCode(Object proxy, Object[] args) {
+        return System.identityHashCode(proxy);
     }
 }
@@ -1,48 +1,275 @@
 package gg.supervisor.core.repository.player;
 
+import com.google.gson.Gson;
+import gg.supervisor.core.loader.SupervisorLoader;
 import gg.supervisor.core.repository.PlayerRepository;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.entity.Player;
 import org.bukkit.Bukkit;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The {@code PlayerRepositoryListener} ties the profiles of a {@link PlayerRepository} to player sessions.
+ *
+ * <p>The profile is loaded while the player logs in, on the login thread, and pinned in the repository's
+ * cache until the player quits. A login that cannot load the profile within the preload timeout is denied,
+ * so the player never plays on a missing profile. On quit, a copy of the profile is taken on the server
+ * thread, saved on the repository's I/O executor, and then evicted from the cache.</p>
+ *
+ * <p>Loads and saves of one player run on the same I/O lane in order. A player who rejoins before the
+ * previous save finished therefore loads the saved profile, never an older file. A second connection that
+ * logs in before the first one quit keeps the profile pinned.</p>
+ *
+ * <p>A connection that is dropped between the login and the join fires no quit event. Its session is
+ * therefore closed if the player has not joined within the join timeout, {@code -Dsupervisor.joinTimeout}
+ * (60 seconds), so the profile does not stay pinned and later quits of the player still save it.</p>
+ *
+ * @param <T> The type of the player profiles.
+ */
 public class PlayerRepositoryListener<T> implements Listener {
 
+    // Upper bound for loading a profile during login, overridable with -Dsupervisor.preloadTimeout=<millis>
+    private static final long DEFAULT_PRELOAD_TIMEOUT_MILLIS = Long.getLong("supervisor.preloadTimeout", 5_000L);
+
+    // Time between an allowed login and the join after which the login counts as abandoned
+    private static final long JOIN_TIMEOUT_MILLIS = Long.getLong("supervisor.joinTimeout", 60_000L);
+
+    // Closes the sessions of abandoned logins, shared by all listeners. The tasks only update the session map
+    private static final ScheduledExecutorService JOIN_TIMEOUTS = createJoinTimeoutExecutor();
+
     private final PlayerRepository<T> playerRepository;
+    private final Gson gson;
+    private final long preloadTimeoutMillis;
+
+    // Open sessions by key, a player has two while a new connection replaces an old one. Guarded by itself
+    private final Map<String, Integer> sessions = new HashMap<>();
+
+    // Logins this listener preloaded, released once the login event has finished
+    private final Set<AsyncPlayerPreLoginEvent> preloaded = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // Allowed logins that have not joined yet by key, oldest first. Guarded by sessions
+    private final Map<String, Deque<PendingJoin>> awaitingJoin = new HashMap<>();
 
     public PlayerRepositoryListener(PlayerRepository<T> playerRepository) {
+        this(playerRepository, SupervisorLoader.STORAGE_GSON, DEFAULT_PRELOAD_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param playerRepository     The repository of the player profiles.
+     * @param gson                 The serializer used to copy a profile when its player quits.
+     * @param preloadTimeoutMillis The time a login may wait for its profile before it is denied.
+     */
+    public PlayerRepositoryListener(PlayerRepository<T> playerRepository, Gson gson, long preloadTimeoutMillis) {
         this.playerRepository = playerRepository;
+        this.gson = gson;
+        this.preloadTimeoutMillis = preloadTimeoutMillis;
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.HIGH)
     public void onPlayerLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return; // Denied by another plugin, nothing to load
+        }
+
         // Get player UUID as the key
         String playerKey = event.getUniqueId().toString();
+        openSession(playerKey);
+        preloaded.add(event);
 
-        // Only load the profile if it already exists
-        if (playerRepository.containsKey(playerKey)) {
-            T profile = playerRepository.find(playerKey);
+        try {
+            // Queued on the key's I/O lane, so it runs after the save of a session that just quit
+            T profile = playerRepository.findAsync(playerKey).get(preloadTimeoutMillis, TimeUnit.MILLISECONDS);
             if (profile != null) {
-                playerRepository.save(playerKey, profile);
                 Bukkit.getLogger().info("Loaded existing profile for player: " + event.getName());
+            } else {
+                Bukkit.getLogger().info("No existing profile found for player: " + event.getName());
             }
+        } catch (TimeoutException e) {
+            Bukkit.getLogger().severe("Timed out after " + preloadTimeoutMillis + " ms loading profile for player: " + event.getName());
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "Your profile could not be loaded, please try again.");
+        } catch (ExecutionException e) {
+            Bukkit.getLogger().severe("Failed to load profile for player: " + event.getName());
+            e.getCause().printStackTrace();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "Your profile could not be loaded, please try again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "Your profile could not be loaded, please try again.");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(AsyncPlayerPreLoginEvent event) {
+        if (!preloaded.remove(event)) {
+            return;
+        }
+
+        // The login may have been denied after the profile was loaded, by this listener or another plugin
+        String playerKey = event.getUniqueId().toString();
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            closeSession(playerKey);
         } else {
-            Bukkit.getLogger().info("No existing profile found for player: " + event.getName());
+            awaitJoin(playerKey);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoinResult(PlayerLoginEvent event) {
+        // Whitelist and server full checks run after the profile was loaded, the player never joins
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            String playerKey = event.getPlayer().getUniqueId().toString();
+            synchronized (sessions) {
+                if (stopAwaitingJoin(playerKey)) {
+                    closeSession(playerKey);
+                }
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        // From here on the session ends with the quit event
+        synchronized (sessions) {
+            stopAwaitingJoin(event.getPlayer().getUniqueId().toString());
         }
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         String playerKey = player.getUniqueId().toString();
 
-        // Find the player's profile and save it
-        T profile = playerRepository.find(playerKey);
-        if (profile != null) {
-            playerRepository.save(playerKey, profile);
-            Bukkit.getLogger().info("Saved and removed profile for player: " + player.getName());
+        if (!closeSession(playerKey)) {
+            return; // A newer connection of the player is online and saves the profile when it quits
         }
+
+        // Only the cache is read, the server thread never waits for storage. The profile is pinned while the
+        // player is online, so it is absent only if it was never loaded and there is nothing to save
+        T profile = playerRepository.findIfCached(playerKey);
+        if (profile == null) {
+            return;
+        }
+
+        // Copied on the server thread, so the save never sees a change that is half applied
+        T snapshot = snapshot(profile);
+        String playerName = player.getName();
+
+        // Each step is queued on the key's I/O lane behind the previous one; a rejoin queued in between pins
+        // the profile, and the eviction then keeps it
+        playerRepository.saveAsync(playerKey, snapshot)
+                .thenCompose(result -> playerRepository.flushAsync(playerKey))
+                .thenCompose(result -> playerRepository.evictAsync(playerKey))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Bukkit.getLogger().severe("Failed to save profile for player: " + playerName);
+                        error.printStackTrace();
+                    } else {
+                        Bukkit.getLogger().info("Saved and removed profile for player: " + playerName);
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private T snapshot(T profile) {
+        return (T) gson.fromJson(gson.toJsonTree(profile), profile.getClass());
+    }
+
+    private void openSession(String playerKey) {
+        synchronized (sessions) {
+            sessions.merge(playerKey, 1, Integer::sum);
+            playerRepository.pin(playerKey);
+        }
+    }
+
+    /**
+     * Closes the session of an allowed login unless the player joins within the join timeout.
+     */
+    private void awaitJoin(String playerKey) {
+        synchronized (sessions) {
+            Deque<PendingJoin> logins = awaitingJoin.computeIfAbsent(playerKey, key -> new ArrayDeque<>());
+            PendingJoin login = new PendingJoin();
+            login.timeout = JOIN_TIMEOUTS.schedule(() -> {
+                synchronized (sessions) {
+                    if (logins.remove(login)) {
+                        if (logins.isEmpty()) {
+                            awaitingJoin.remove(playerKey, logins);
+                        }
+                        closeSession(playerKey);
+                    }
+                }
+            }, JOIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            logins.add(login);
+        }
+    }
+
+    /**
+     * Stops waiting for the oldest login of the player that has not joined yet, because it joined or was
+     * denied, and cancels its timeout. Must be called while holding {@code sessions}.
+     *
+     * @return {@code false} if the login already timed out, or was not preloaded by this listener.
+     */
+    private boolean stopAwaitingJoin(String playerKey) {
+        Deque<PendingJoin> logins = awaitingJoin.get(playerKey);
+        if (logins == null) {
+            return false;
+        }
+        logins.poll().timeout.cancel(false);
+        if (logins.isEmpty()) {
+            awaitingJoin.remove(playerKey);
+        }
+        return true;
+    }
+
+    /**
+     * Ends one session of the player and unpins the profile if it was the last one.
+     *
+     * @return {@code true} if no other session of the player is open.
+     */
+    private boolean closeSession(String playerKey) {
+        synchronized (sessions) {
+            Integer remaining = sessions.computeIfPresent(playerKey, (key, count) -> count > 1 ? count - 1 : null);
+            if (remaining != null) {
+                return false;
+            }
+            playerRepository.unpin(playerKey);
+            return true;
+        }
+    }
+
+    private static ScheduledExecutorService createJoinTimeoutExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Join Timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Nearly every login joins in time, do not keep its cancelled timeout queued for a minute
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * An allowed login waiting for its player to join.
+     */
+    private static final class PendingJoin {
+        // Set right after scheduling, read by the timeout and joins while holding sessions
+        private ScheduledFuture<?> timeout;
     }
 }
@@ -0,0 +1,232 @@
+package gg.supervisor.core.repository.query;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes from property values to the keys of the entities holding them, kept by stores that
+ * can see every save and delete.
+ *
+ * <p>Each registered property gets a hash index for equality queries, plus an ordered index once a range
+ * query on it is declared. Indexes hold keys rather than entities and reflect the state each entity had when
+ * it was last saved: an entity that is changed in memory but not saved is still found under its old value.</p>
+ *
+ * <p>Safe for concurrent use. Lookups share a read lock, updates take the write lock.</p>
+ *
+ * @param <T> The type of the indexed entities.
+ */
+public final class EntityIndex<T> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PropertyIndex> properties = new HashMap<>();
+
+    /**
+     * Adds an index for a property, or upgrades an existing one to also support range queries.
+     *
+     * @param property The indexed property.
+     * @param sorted   {@code true} if range queries must be served as well.
+     * @return {@code true} if the index changed and has to be rebuilt with {@link #rebuild(Map)}.
+     */
+    public boolean register(PropertyAccessor property, boolean sorted) {
+        lock.writeLock().lock();
+        try {
+            PropertyIndex existing = properties.get(property.getName());
+            if (existing != null && (existing.sorted != null || !sorted)) {
+                return false;
+            }
+            properties.put(property.getName(), new PropertyIndex(property, sorted));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if no property is indexed, stores can then skip all index maintenance.
+     */
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return properties.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Empties every index, for stores that refill it one entity at a time with {@link #put(String, Object)}
+     * instead of holding every entity at once.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (PropertyIndex index : properties.values()) {
+                index.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content of every index with the given entities.
+     *
+     * @param entities Every stored entity by key.
+     */
+    public void rebuild(Map<String, T> entities) {
+        lock.writeLock().lock();
+        try {
+            for (PropertyIndex index : properties.values()) {
+                index.clear();
+                entities.forEach((key, entity) -> {
+                    if (entity != null) {
+                        index.put(key, entity);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a saved entity, replacing what was indexed for its key before.
+     */
+    public void put(String key, T entity) {
+        lock.writeLock().lock();
+        try {
+            for (PropertyIndex index : properties.values()) {
+                index.remove(key);
+                if (entity != null) {
+                    index.put(key, entity);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted entity from every index.
+     */
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            for (PropertyIndex index : properties.values()) {
+                index.remove(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up the keys of the entities matching a query.
+     *
+     * @param query The query.
+     * @return A new set of matching keys, or {@code null} if the query's property has no suitable index.
+     */
+    public Set<String> keys(Query query) {
+        lock.readLock().lock();
+        try {
+            PropertyIndex index = properties.get(query.getProperty().getName());
+            if (index == null || (query.getOperator().isRange() && index.sorted == null)) {
+                return null;
+            }
+            return index.keys(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class PropertyIndex {
+
+        private final PropertyAccessor property;
+
+        // Normalized value of every indexed key, needed to find the old entry when a key is re-saved
+        private final Map<String, Object> valueByKey = new HashMap<>();
+        private final Map<Object, Set<String>> keysByValue = new HashMap<>();
+
+        // Only present once a range query is declared on the property, null values are not ordered
+        private final NavigableMap<Object, Set<String>> sorted;
+
+        private PropertyIndex(PropertyAccessor property, boolean sorted) {
+            this.property = property;
+            this.sorted = sorted ? new TreeMap<>(Query::compare) : null;
+        }
+
+        private void put(String key, Object entity) {
+            Object value = Query.normalize(property.get(entity));
+            valueByKey.put(key, value);
+            keysByValue.computeIfAbsent(value, v -> new HashSet<>()).add(key);
+            if (sorted != null && value != null) {
+                sorted.computeIfAbsent(value, v -> new HashSet<>()).add(key);
+            }
+        }
+
+        private void remove(String key) {
+            if (!valueByKey.containsKey(key)) {
+                return;
+            }
+
+            Object value = valueByKey.remove(key);
+            removeFrom(keysByValue, value, key);
+            if (sorted != null && value != null) {
+                removeFrom(sorted, value, key);
+            }
+        }
+
+        private static void removeFrom(Map<Object, Set<String>> index, Object value, String key) {
+            Set<String> keys = index.get(value);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                index.remove(value);
+            }
+        }
+
+        private void clear() {
+            valueByKey.clear();
+            keysByValue.clear();
+            if (sorted != null) {
+                sorted.clear();
+            }
+        }
+
+        private Set<String> keys(Query query) {
+            if (query.getOperator() == Query.Operator.EQUALS) {
+                Set<String> keys = keysByValue.get(query.getValue(0));
+                return keys != null ? new LinkedHashSet<>(keys) : new LinkedHashSet<>();
+            }
+
+            Object value = query.getValue(0);
+            if (value == null) {
+                return new LinkedHashSet<>();
+            }
+
+            Collection<Set<String>> matches = switch (query.getOperator()) {
+                case GREATER_THAN -> sorted.tailMap(value, false).values();
+                case GREATER_THAN_EQUAL -> sorted.tailMap(value, true).values();
+                case LESS_THAN -> sorted.headMap(value, false).values();
+                case LESS_THAN_EQUAL -> sorted.headMap(value, true).values();
+                case BETWEEN -> {
+                    Object upper = query.getValue(1);
+                    yield upper == null || Query.compare(value, upper) > 0
+                            ? Set.of()
+                            : sorted.subMap(value, true, upper, true).values();
+                }
+                default -> Set.of();
+            };
+
+            Set<String> keys = new LinkedHashSet<>();
+            matches.forEach(keys::addAll);
+            return keys;
+        }
+    }
+}
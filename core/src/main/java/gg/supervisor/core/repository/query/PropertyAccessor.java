@@ -0,0 +1,112 @@
+package gg.supervisor.core.repository.query;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads one field of an entity through a {@link MethodHandle} getter, bound once per class and field name.
+ *
+ * <p>Query methods and store indexes use this to read the queried property of every entity they look at,
+ * so the field lookup and access check happen once instead of per entity.</p>
+ */
+public final class PropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Map<String, PropertyAccessor>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String name;
+    private final String serializedName;
+    private final Class<?> type;
+    private final MethodHandle getter;
+
+    private PropertyAccessor(Field field, MethodHandle getter) {
+        SerializedName serialized = field.getAnnotation(SerializedName.class);
+        this.name = field.getName();
+        this.serializedName = serialized != null ? serialized.value() : field.getName();
+        this.type = field.getType();
+        this.getter = getter;
+    }
+
+    /**
+     * Returns the accessor for a field of the given entity type or one of its superclasses.
+     *
+     * @param entityType The entity class.
+     * @param name       The field name.
+     * @return The accessor, never {@code null}.
+     * @throws IllegalArgumentException If the entity has no such instance field.
+     */
+    public static PropertyAccessor of(Class<?> entityType, String name) {
+        return ACCESSORS.get(entityType).computeIfAbsent(name, key -> create(entityType, key));
+    }
+
+    private static PropertyAccessor create(Class<?> entityType, String name) {
+        for (Class<?> current = entityType; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!field.getName().equals(name) || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+
+                try {
+                    field.trySetAccessible();
+                    MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(current, MethodHandles.lookup());
+                    return new PropertyAccessor(field, lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException("Cannot access property " + name + " of " + entityType.getName(), e);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown property " + name + " of " + entityType.getName());
+    }
+
+    /**
+     * @return The Java field name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The name the field is written under by Gson, honouring {@link SerializedName}.
+     */
+    public String getSerializedName() {
+        return serializedName;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Reads the property from an entity.
+     *
+     * @param entity The entity, must be an instance of the class this accessor was created for.
+     * @return The field value.
+     */
+    public Object get(Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot read property " + name, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
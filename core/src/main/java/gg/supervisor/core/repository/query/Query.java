@@ -0,0 +1,161 @@
+package gg.supervisor.core.repository.query;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A condition on one property of an entity, as declared by a derived query method such as
+ * {@code findByClanName(String)} or {@code countByLevelGreaterThan(int)}.
+ *
+ * <p>Stores receive queries through {@link gg.supervisor.core.repository.store.Store#query(Query)} and may
+ * answer them from an index or push them down to their database. {@link #matches(Object)} evaluates the
+ * condition in memory and is what every store falls back to.</p>
+ *
+ * <p>Numbers are compared by value regardless of their boxed type, so an {@code int} field can be queried
+ * with a {@code long} parameter.</p>
+ */
+public final class Query {
+
+    /**
+     * How the property is compared with the query's values. The suffix is the part of the method name
+     * after the property, e.g. {@code findByLevelGreaterThan}.
+     */
+    public enum Operator {
+        EQUALS("", 1, false),
+        GREATER_THAN_EQUAL("GreaterThanEqual", 1, true),
+        LESS_THAN_EQUAL("LessThanEqual", 1, true),
+        GREATER_THAN("GreaterThan", 1, true),
+        LESS_THAN("LessThan", 1, true),
+        BETWEEN("Between", 2, true);
+
+        private final String suffix;
+        private final int arity;
+        private final boolean range;
+
+        Operator(String suffix, int arity, boolean range) {
+            this.suffix = suffix;
+            this.arity = arity;
+            this.range = range;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+
+        /**
+         * @return The number of method parameters the operator takes.
+         */
+        public int getArity() {
+            return arity;
+        }
+
+        /**
+         * @return {@code true} if the operator needs an ordered index rather than a hash index.
+         */
+        public boolean isRange() {
+            return range;
+        }
+    }
+
+    private final PropertyAccessor property;
+    private final Operator operator;
+    private final Object[] values;
+
+    public Query(PropertyAccessor property, Operator operator, Object... values) {
+        if (values.length != operator.getArity()) {
+            throw new IllegalArgumentException(operator + " takes " + operator.getArity() + " values, got " + values.length);
+        }
+
+        this.property = property;
+        this.operator = operator;
+        this.values = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = normalize(values[i]);
+        }
+    }
+
+    public PropertyAccessor getProperty() {
+        return property;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @param index The value's position, {@code 1} is only valid for {@link Operator#BETWEEN}.
+     * @return The normalized value, numbers are widened to {@code Long} or {@code Double}.
+     */
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Evaluates the condition against an entity.
+     *
+     * @param entity The entity to test.
+     * @return {@code true} if the entity's property satisfies the condition.
+     */
+    public boolean matches(Object entity) {
+        return matchesValue(property.get(entity));
+    }
+
+    /**
+     * Evaluates the condition against an already read property value.
+     *
+     * @param propertyValue The property value, may be {@code null}.
+     * @return {@code true} if the value satisfies the condition.
+     */
+    public boolean matchesValue(Object propertyValue) {
+        Object value = normalize(propertyValue);
+        if (operator == Operator.EQUALS) {
+            return Objects.equals(value, values[0]);
+        }
+        if (value == null || values[0] == null) {
+            return false; // Nulls never satisfy an ordering
+        }
+
+        return switch (operator) {
+            case GREATER_THAN -> compare(value, values[0]) > 0;
+            case GREATER_THAN_EQUAL -> compare(value, values[0]) >= 0;
+            case LESS_THAN -> compare(value, values[0]) < 0;
+            case LESS_THAN_EQUAL -> compare(value, values[0]) <= 0;
+            case BETWEEN -> values[1] != null && compare(value, values[0]) >= 0 && compare(value, values[1]) <= 0;
+            default -> false;
+        };
+    }
+
+    /**
+     * Widens numbers so that values of different boxed types compare and hash alike.
+     *
+     * @param value The value.
+     * @return {@code Long} for integral numbers, {@code Double} for floating point numbers, otherwise the value itself.
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    /**
+     * Orders two normalized, non-null values. Mixed integral and floating point numbers compare as doubles.
+     *
+     * @throws ClassCastException If the values are not mutually comparable.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object a, Object b) {
+        if (a instanceof Number first && b instanceof Number second && a.getClass() != b.getClass()) {
+            return Double.compare(first.doubleValue(), second.doubleValue());
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    @Override
+    public String toString() {
+        return property + " " + operator + " " + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,168 @@
+package gg.supervisor.core.repository.query;
+
+import gg.supervisor.core.repository.store.Store;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A query method declared on a repository interface, parsed from its name when the repository proxy is created.
+ *
+ * <p>Supported names are {@code findBy}, {@code findAllBy}, {@code countBy} and {@code existsBy} followed by a
+ * field name of the entity, optionally followed by an operator suffix:</p>
+ * <pre>{@code
+ * public interface ProfileRepository extends PlayerRepository<Profile> {
+ *     List<Profile> findByClanName(String clanName);
+ *     Optional<Profile> findByName(String name);
+ *     long countByRank(String rank);
+ *     List<Profile> findByLevelBetween(int min, int max);
+ *     boolean existsByDiscordId(long discordId);
+ * }
+ * }</pre>
+ *
+ * <p>{@code find} methods may return the entity itself (the first match or {@code null}), an {@link Optional},
+ * a {@link List}, {@link Set} or {@link Collection}, or a {@link Map} by key. {@code count} methods return
+ * {@code long} or {@code int}, {@code exists} methods return {@code boolean}.</p>
+ */
+public final class QueryMethod {
+
+    private enum Kind {
+        FIND, COUNT, EXISTS
+    }
+
+    // Longest prefix first, findAllBy must not be read as findBy + "AllBy..."
+    private static final String[] PREFIXES = {"findAllBy", "findBy", "countBy", "existsBy"};
+    private static final Kind[] KINDS = {Kind.FIND, Kind.FIND, Kind.COUNT, Kind.EXISTS};
+
+    // Longest suffix first, GreaterThanEqual must not be read as GreaterThan
+    private static final Query.Operator[] OPERATORS = {
+            Query.Operator.GREATER_THAN_EQUAL, Query.Operator.LESS_THAN_EQUAL,
+            Query.Operator.GREATER_THAN, Query.Operator.LESS_THAN, Query.Operator.BETWEEN
+    };
+
+    private final Kind kind;
+    private final PropertyAccessor property;
+    private final Query.Operator operator;
+    private final Class<?> returnType;
+
+    private QueryMethod(Kind kind, PropertyAccessor property, Query.Operator operator, Class<?> returnType) {
+        this.kind = kind;
+        this.property = property;
+        this.operator = operator;
+        this.returnType = returnType;
+    }
+
+    /**
+     * Parses a repository method.
+     *
+     * @param method     The abstract repository method.
+     * @param entityType The entity class of the repository.
+     * @return The query method, or {@code null} if the name does not start with a query prefix.
+     * @throws IllegalStateException If the name is a query but names an unknown property, or the method's
+     *                               parameters or return type do not fit it.
+     */
+    public static QueryMethod parse(Method method, Class<?> entityType) {
+        String name = method.getName();
+        for (int i = 0; i < PREFIXES.length; i++) {
+            if (name.startsWith(PREFIXES[i]) && name.length() > PREFIXES[i].length()) {
+                return parse(method, entityType, KINDS[i], name.substring(PREFIXES[i].length()));
+            }
+        }
+        return null;
+    }
+
+    private static QueryMethod parse(Method method, Class<?> entityType, Kind kind, String remainder) {
+        Query.Operator operator = Query.Operator.EQUALS;
+        for (Query.Operator candidate : OPERATORS) {
+            String suffix = candidate.getSuffix();
+            if (remainder.endsWith(suffix) && remainder.length() > suffix.length()) {
+                operator = candidate;
+                remainder = remainder.substring(0, remainder.length() - suffix.length());
+                break;
+            }
+        }
+
+        if (method.getParameterCount() != operator.getArity()) {
+            throw new IllegalStateException("Query method " + describe(method) + " must take " + operator.getArity() + " parameter(s)");
+        }
+
+        String propertyName = Character.toLowerCase(remainder.charAt(0)) + remainder.substring(1);
+        PropertyAccessor property;
+        try {
+            property = PropertyAccessor.of(entityType, propertyName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Query method " + describe(method) + " refers to an unknown property: " + e.getMessage(), e);
+        }
+
+        Class<?> returnType = method.getReturnType();
+        boolean valid = switch (kind) {
+            case FIND -> returnType != void.class;
+            case COUNT -> returnType == long.class || returnType == Long.class || returnType == int.class || returnType == Integer.class;
+            case EXISTS -> returnType == boolean.class || returnType == Boolean.class;
+        };
+        if (!valid) {
+            throw new IllegalStateException("Query method " + describe(method) + " has an unsupported return type " + returnType.getSimpleName());
+        }
+
+        return new QueryMethod(kind, property, operator, returnType);
+    }
+
+    private static String describe(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "#" + method.getName();
+    }
+
+    public PropertyAccessor getProperty() {
+        return property;
+    }
+
+    public Query.Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * Runs the query against a store and converts the result to the method's return type.
+     *
+     * @param store The repository's store.
+     * @param args  The method arguments.
+     * @return The converted result.
+     */
+    public Object execute(Store<?> store, Object[] args) {
+        Query query = new Query(property, operator, args);
+        return switch (kind) {
+            case COUNT -> {
+                long count = store.count(query);
+                yield returnType == int.class || returnType == Integer.class ? (Object) (int) count : (Object) count;
+            }
+            case EXISTS -> store.exists(query);
+            case FIND -> convert(store.query(query));
+        };
+    }
+
+    private Object convert(Map<String, ?> results) {
+        if (returnType == Map.class) {
+            return results;
+        }
+        if (returnType == Set.class) {
+            return new LinkedHashSet<>(results.values());
+        }
+        if (returnType == List.class || returnType == Collection.class || returnType == Iterable.class) {
+            return new ArrayList<>(results.values());
+        }
+
+        Iterator<?> iterator = results.values().iterator();
+        Object first = iterator.hasNext() ? iterator.next() : null;
+        return returnType == Optional.class ? Optional.ofNullable(first) : first;
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + " " + property + " " + operator;
+    }
+}
@@ -0,0 +1,94 @@
+package gg.supervisor.core.repository.store;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers a hash of the serialized form each key was last written with, so stores can skip saves of
+ * entities that did not change since.
+ *
+ * <p>Stores serialize the entity anyway before writing it, so comparing the hash only adds a pass over
+ * the serialized form, while an autosave of unchanged profiles no longer writes a file or sends a
+ * document. The hash is a 64-bit FNV-1a; a collision, which would skip one real change, is far less likely
+ * than a failing disk.</p>
+ *
+ * <p>A store must {@link #forget(String)} a key whenever it reads the entity from storage again, because
+ * the stored entity may have been changed by someone else in the meantime. Stores with a bounded cache also
+ * forget keys the cache evicts or expires, see {@link gg.supervisor.core.repository.cache.EntityCache#setEvictionListener},
+ * so the tracker never holds more keys than the cache. Saves of one key are expected in order, which the
+ * repository's I/O lanes guarantee for asynchronous saves.</p>
+ */
+public final class ChangeTracker {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, Long> written = new ConcurrentHashMap<>();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+
+    /**
+     * @param serialized The serialized form of an entity.
+     * @return A 64-bit hash of it.
+     */
+    public static long hash(String serialized) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < serialized.length(); i++) {
+            hash ^= serialized.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param serialized An array holding the binary form of an entity, such as a BSON document.
+     * @param offset     The index of its first byte.
+     * @param length     The number of its bytes.
+     * @return A 64-bit hash of it.
+     */
+    public static long hash(byte[] serialized, int offset, int length) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= serialized[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether an entity must be written, counting the save as skipped if it must not.
+     *
+     * @param key  The key of the entity.
+     * @param hash The {@link #hash(String) hash} of its serialized form.
+     * @return {@code false} if the key was last written with the same hash.
+     */
+    public boolean isChanged(String key, long hash) {
+        Long last = written.get(key);
+        if (last != null && last == hash) {
+            skips.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the entity was written successfully.
+     */
+    public void written(String key, long hash) {
+        written.put(key, hash);
+        writes.increment();
+    }
+
+    /**
+     * Forgets the key's hash, so its next save is written. Called when the entity is deleted, evicted or
+     * loaded from storage.
+     */
+    public void forget(String key) {
+        written.remove(key);
+    }
+
+    public SaveStats stats() {
+        return new SaveStats(writes.sum(), skips.sum());
+    }
+}
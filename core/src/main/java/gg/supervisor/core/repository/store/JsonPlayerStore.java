@@ -1,13 +1,44 @@
 package gg.supervisor.core.repository.store;
 
+import com.google.gson.Gson;
+import gg.supervisor.core.loader.SupervisorLoader;
+import gg.supervisor.core.repository.cache.CacheStats;
+import gg.supervisor.core.repository.cache.EntityCache;
+import gg.supervisor.core.repository.query.EntityIndex;
+import gg.supervisor.core.repository.query.PropertyAccessor;
+import gg.supervisor.core.repository.query.Query;
+
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-
-import static gg.supervisor.core.loader.SupervisorLoader.GSON;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * The {@code JsonPlayerStore} class provides a mechanism for storing and managing individual player data
@@ -23,23 +54,60 @@ import static gg.supervisor.core.loader.SupervisorLoader.GSON;
  *     <li><strong>Player-Specific Storage:</strong> Each player’s data is stored in a separate file named
  *     using the player's key, making it easier to access or delete individual records.</li>
  *     <li><strong>In-Memory Caching:</strong> Frequently accessed player data is cached in memory to reduce
- *     file I/O operations and enhance performance.</li>
- *     <li><strong>Robust File Handling:</strong> Proper directory and file handling to ensure files are created,
- *     read, and deleted correctly with appropriate checks and debug statements.</li>
+ *     file I/O operations and enhance performance. The cache is bounded and keeps the profiles that are used
+ *     most, see {@link gg.supervisor.core.annotation.Cache}; profiles of online players are pinned.</li>
+ *     <li><strong>Change Detection:</strong> A profile's file is only rewritten if its serialized form changed
+ *     since it was last written, so autosaves of idle players write nothing, see {@link ChangeTracker}.</li>
+ *     <li><strong>Robust File Handling:</strong> Files are written to a temporary file and moved over the old
+ *     one, and writes and deletes of one key never run at the same time, so concurrent saves from the I/O
+ *     lanes, the write-behind thread and {@link #flush()} never leave a torn or stale profile.</li>
+ *     <li><strong>Indexed Queries:</strong> Properties used by derived query methods are indexed over every file
+ *     the first time they are queried, then kept up to date on save and delete.</li>
  * </ul>
  *
  * @param <T> The type of player data being managed by the {@code JsonPlayerStore}.
  */
 public class JsonPlayerStore<T> implements Store<T> {
 
+    private static final Logger LOGGER = Logger.getLogger(JsonPlayerStore.class.getName());
+
+    // Threads reading and writing the files of bulk operations, shared by every player store
+    private static final int PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService BULK_IO = createBulkExecutor();
+
+    // Locks guarding the file of a key, striped by key hash
+    private static final int LOCK_STRIPES = 64;
+
+    // Recorded for keys deleted while the index is being built
+    private static final Object DELETED = new Object();
+
     // Directory where player data files are stored
     private final File directory;
 
     // Type of the player data entity
     private final Class<T> entityType;
 
-    // In-memory cache for faster data retrieval
-    private final Map<String, T> cache;
+    // Serializer for the repository's profile, compact unless the repository asks otherwise
+    private final Gson gson;
+
+    // In-memory cache for faster data retrieval, evicting profiles that are rarely used
+    private final EntityCache<T> cache;
+
+    // Hashes of the profiles as last written, to skip saves of unchanged profiles
+    private final ChangeTracker changes = new ChangeTracker();
+
+    // Held while a key's file is written or deleted, so the hash check, the write and its record are atomic
+    private final Object[] fileLocks = new Object[LOCK_STRIPES];
+
+    // Secondary indexes for the repository's query methods, built from every file on the first query
+    private final EntityIndex<T> index = new EntityIndex<>();
+    private final Object indexBuildLock = new Object();
+    private volatile boolean indexed;
+
+    // Values saved or deleted while the index is being built, replayed once it is done. Guarded by
+    // indexUpdateLock, which also orders the switch to the built index against concurrent updates
+    private final Object indexUpdateLock = new Object();
+    private Map<String, Object> modifiedDuringBuild;
 
     /**
      * Constructs a new {@code JsonPlayerStore} for managing player data.
@@ -48,9 +116,40 @@ public class JsonPlayerStore<T> implements Store<T> {
      * @param entityType The class type of the player data entities.
      */
     public JsonPlayerStore(File directory, Class<T> entityType) {
+        this(directory, entityType, SupervisorLoader.STORAGE_GSON);
+    }
+
+    /**
+     * Constructs a new {@code JsonPlayerStore} that serializes through the given {@code Gson} instance.
+     *
+     * @param directory  The directory where player-specific JSON files will be stored.
+     * @param entityType The class type of the player data entities.
+     * @param gson       The serializer, see {@link SupervisorLoader#getGson}.
+     */
+    public JsonPlayerStore(File directory, Class<T> entityType, Gson gson) {
+        this(directory, entityType, gson, EntityCache.create(null));
+    }
+
+    /**
+     * Constructs a new {@code JsonPlayerStore} that caches profiles in the given cache.
+     *
+     * <p>Profiles evicted from the cache are not written back. Changes to the profile of an offline player
+     * must be saved, as only cached profiles are written by {@link #flush()}.</p>
+     *
+     * @param directory  The directory where player-specific JSON files will be stored.
+     * @param entityType The class type of the player data entities.
+     * @param gson       The serializer, see {@link SupervisorLoader#getGson}.
+     * @param cache      The profile cache, see {@link EntityCache#create}.
+     */
+    public JsonPlayerStore(File directory, Class<T> entityType, Gson gson, EntityCache<T> cache) {
         this.directory = directory;
         this.entityType = entityType;
-        this.cache = new ConcurrentHashMap<>();
+        this.gson = gson;
+        this.cache = cache;
+        cache.setEvictionListener(changes::forget); // Evicted profiles are read from storage again on their next use
+        for (int i = 0; i < fileLocks.length; i++) {
+            fileLocks[i] = new Object();
+        }
 
         if (!directory.exists()) {
             directory.mkdirs(); // Create the directory if it does not exist
@@ -67,8 +166,9 @@ public class JsonPlayerStore<T> implements Store<T> {
     @Override
     public T get(String key) {
         // Check if the player's data is in the cache
-        if (cache.containsKey(key)) {
-            return cache.get(key);
+        T cached = cache.get(key);
+        if (cached != null) {
+            return cached;
         }
 
         // If not in cache, try to load from file
@@ -77,12 +177,14 @@ public class JsonPlayerStore<T> implements Store<T> {
             return null;
         }
         try (FileReader reader = new FileReader(file)) {
-            T data = GSON.fromJson(reader, entityType);
-            // Cache the loaded data if it was successfully read
+            T data = gson.fromJson(reader, entityType);
+            // Cache the loaded data if it was successfully read, unless a concurrent load cached it first
             if (data != null) {
-                cache.put(key, data);
+                changes.forget(key); // The file is the reference again, whoever wrote it
+                T existing = cache.putIfAbsent(key, data);
+                return existing != null ? existing : data;
             }
-            return data;
+            return null;
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -91,7 +193,8 @@ public class JsonPlayerStore<T> implements Store<T> {
 
     /**
      * Saves or updates the player data associated with the given key.
-     * The data is both saved to the in-memory cache and persisted to a file.
+     * The data is both saved to the in-memory cache and persisted to a file, unless it is unchanged
+     * since it was last written.
      *
      * @param key   The unique key for the player data (typically a UUID).
      * @param value The player data to save.
@@ -100,24 +203,368 @@ public class JsonPlayerStore<T> implements Store<T> {
     public void save(String key, T value) {
         // Save to cache
         cache.put(key, value);
+        updateIndex(key, value);
 
         // Persist to file
-        File file = new File(directory, key + ".json");
+        if (writeIfChanged(key, value)) {
+            // Debug statement to verify file path and content
+            System.out.println("Saved data for key: " + key + " to file: " + new File(directory, key + ".json").getAbsolutePath());
+        }
+    }
+
+    /**
+     * Declares a queried property. The index is built from every file on the next query.
+     *
+     * @param property The queried property.
+     * @param sorted   {@code true} if range queries are declared on the property.
+     */
+    @Override
+    public void registerIndex(PropertyAccessor property, boolean sorted) {
+        if (index.register(property, sorted)) {
+            indexed = false;
+        }
+    }
+
+    /**
+     * Answers a query from the property's index, loading only the matching files.
+     *
+     * @param query The condition on one property.
+     * @return The matching entities by key.
+     */
+    @Override
+    public Map<String, T> query(Query query) {
+        Set<String> keys = indexedKeys(query);
+        if (keys == null) {
+            return Store.super.query(query);
+        }
+
+        Map<String, T> matches = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                matches.put(key, value);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public long count(Query query) {
+        Set<String> keys = indexedKeys(query);
+        return keys != null ? keys.size() : Store.super.count(query);
+    }
+
+    private Set<String> indexedKeys(Query query) {
+        if (index.isEmpty()) {
+            return null;
+        }
+
+        if (!indexed) {
+            synchronized (indexBuildLock) {
+                if (!indexed) {
+                    buildIndex();
+                }
+            }
+        }
+        return index.keys(query);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void buildIndex() {
+        // Saves that happen while the files are read are recorded with their value and replayed, so they
+        // are never lost, even if the profile left the cache in the meantime
+        Map<String, Object> modified = new HashMap<>();
+        synchronized (indexUpdateLock) {
+            modifiedDuringBuild = modified;
+        }
+
+        // One file at a time, so the build never holds every stored profile in memory
+        index.clear();
+        try (Stream<Map.Entry<String, T>> entries = stream()) {
+            entries.forEach(entry -> index.put(entry.getKey(), entry.getValue()));
+        }
+
+        synchronized (indexUpdateLock) {
+            modified.forEach((key, value) -> {
+                if (value != DELETED) {
+                    index.put(key, (T) value);
+                } else {
+                    index.remove(key);
+                }
+            });
+            modifiedDuringBuild = null;
+            indexed = true;
+        }
+    }
+
+    private void updateIndex(String key, T value) {
+        synchronized (indexUpdateLock) {
+            if (modifiedDuringBuild != null) {
+                modifiedDuringBuild.put(key, value != null ? value : DELETED);
+                return;
+            }
+            if (!indexed) {
+                return; // Built from the files on the next query
+            }
+            if (value != null) {
+                index.put(key, value);
+            } else {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Streams every profile by listing the directory lazily and reading one file at a time. Profiles read this
+     * way are not added to the cache, so streaming every historical player keeps memory constant; cached
+     * profiles are returned as the cached instance. Closing the stream closes the directory handle.
+     *
+     * @return A stream of the stored profiles, which must be closed after use.
+     */
+    @Override
+    public Stream<Map.Entry<String, T>> stream() {
+        Stream<Path> files;
+        try {
+            files = Files.list(directory.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+
+        return files
+                .filter(path -> path.getFileName().toString().endsWith(".json"))
+                .map(this::readEntry)
+                .filter(Objects::nonNull);
+    }
+
+    private Map.Entry<String, T> readEntry(Path path) {
+        String fileName = path.getFileName().toString();
+        String key = fileName.substring(0, fileName.length() - ".json".length());
+
+        T value = cache.peek(key);
+        if (value == null) {
+            try (FileReader reader = new FileReader(path.toFile())) {
+                value = gson.fromJson(reader, entityType);
+            } catch (FileNotFoundException e) {
+                return null; // Deleted since the directory was listed
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return value != null ? new AbstractMap.SimpleImmutableEntry<>(key, value) : null;
+    }
+
+    private static ExecutorService createBulkExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Player I/O #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs an action for every element on the bulk I/O threads, instead of the common pool that the server
+     * and other plugins share, and waits until all are done.
+     */
+    private static <E> void forEachParallel(Collection<E> elements, Consumer<E> action) {
+        List<E> list = new ArrayList<>(elements);
+        int slices = Math.min(PARALLELISM, list.size());
+        if (slices <= 1) {
+            list.forEach(action);
+            return;
+        }
+
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[slices];
+        for (int i = 0; i < slices; i++) {
+            List<E> slice = list.subList(list.size() * i / slices, list.size() * (i + 1) / slices);
+            tasks[i] = CompletableFuture.runAsync(() -> slice.forEach(action), BULK_IO);
+        }
         try {
-            if (!file.exists()) {
-                file.getParentFile().mkdirs(); // Create parent directories if they don't exist
-                file.createNewFile(); // Create the file if it doesn't exist
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            try (FileWriter writer = new FileWriter(file)) {
-                GSON.toJson(value, writer);
+            throw e;
+        }
+    }
+
+    /**
+     * Saves several profiles, writing the files of changed profiles in parallel.
+     *
+     * @param values The player data to save by key.
+     */
+    @Override
+    public void saveAll(Map<String, T> values) {
+        forEachParallel(values.entrySet(), entry -> {
+            cache.put(entry.getKey(), entry.getValue());
+            updateIndex(entry.getKey(), entry.getValue());
+            writeIfChanged(entry.getKey(), entry.getValue());
+        });
+    }
+
+    /**
+     * Loads several profiles, reading the files of uncached keys in parallel.
+     *
+     * @param keys The keys to look up.
+     * @return The player data that exists, by key.
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> loaded = new ConcurrentHashMap<>();
+        forEachParallel(new LinkedHashSet<>(keys), key -> {
+            T value = get(key);
+            if (value != null) {
+                loaded.put(key, value);
             }
-            // Debug statement to verify file path and content
-            System.out.println("Saved data for key: " + key + " to file: " + file.getAbsolutePath());
+        });
+
+        // Keep the order of the requested keys
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = loaded.get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Deletes several profiles, removing their files in parallel.
+     *
+     * @param keys The keys of the player data to delete.
+     */
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        forEachParallel(new LinkedHashSet<>(keys), key -> {
+            cache.remove(key);
+            updateIndex(key, null);
+            deleteFile(key);
+        });
+    }
+
+    /**
+     * Writes every cached profile back to its file. Cached profiles are the live objects handed out by
+     * {@link #get(String)}, so they may have been changed since they were last saved. Only the files of
+     * changed profiles are written, in parallel, which keeps shutdown fast with thousands of cached players.
+     */
+    @Override
+    public void flush() {
+        forEachParallel(cache.asMap().entrySet(), entry -> writeIfChanged(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Writes the profile's file unless the profile is unchanged since it was last written.
+     *
+     * @return {@code true} if the file was written.
+     */
+    private boolean writeIfChanged(String key, T value) {
+        synchronized (fileLock(key)) {
+            // Serialized under the lock, so the file always ends up with the state of the last writer
+            String json = gson.toJson(value);
+            long hash = ChangeTracker.hash(json);
+            if (!changes.isChanged(key, hash)) {
+                return false;
+            }
+
+            if (writeFile(new File(directory, key + ".json"), json)) {
+                changes.written(key, hash);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes to a temporary file and moves it over the real one, so a crash or a concurrent reader never
+     * sees a truncated file.
+     */
+    private boolean writeFile(File file, String json) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs(); // Create parent directories if they don't exist
+        }
+
+        File temp = new File(parent, file.getName() + ".tmp");
+        try {
+            try (FileWriter writer = new FileWriter(temp)) {
+                writer.write(json);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the key's file and forgets its hash, so a later save writes it again.
+     *
+     * @return {@code true} if a file was deleted.
+     */
+    private boolean deleteFile(String key) {
+        synchronized (fileLock(key)) {
+            changes.forget(key);
+            File file = new File(directory, key + ".json");
+            return file.exists() && file.delete();
+        }
+    }
+
+    private Object fileLock(String key) {
+        return fileLocks[Math.floorMod(key.hashCode(), fileLocks.length)];
+    }
+
+    @Override
+    public T getIfCached(String key) {
+        return cache.peek(key);
+    }
+
+    @Override
+    public void pin(String key) {
+        cache.pin(key);
+    }
+
+    @Override
+    public void unpin(String key) {
+        cache.unpin(key);
+    }
+
+    @Override
+    public void evict(String key) {
+        if (cache.evict(key)) {
+            changes.forget(key); // Loaded from the file again on its next use
         }
     }
 
+    @Override
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public SaveStats getSaveStats() {
+        return changes.stats();
+    }
+
+    /**
+     * Reports the cache and save statistics, the files are already written by {@link #flush()}.
+     */
+    @Override
+    public void close() {
+        LOGGER.log(Level.INFO, "Player cache of {0}: {1}; saves: {2}", new Object[]{directory.getName(), cache.stats(), changes.stats()});
+    }
+
     /**
      * Deletes the player data associated with the given key.
      * The data is removed from both the in-memory cache and the file system.
@@ -128,15 +575,11 @@ public class JsonPlayerStore<T> implements Store<T> {
     public void delete(String key) {
         // Remove from cache
         cache.remove(key);
+        updateIndex(key, null);
 
         // Delete from filesystem
-        File file = new File(directory, key + ".json");
-        if (file.exists()) {
-            if (file.delete()) {
-                System.out.println("Deleted file for key: " + key);
-            } else {
-                System.out.println("Failed to delete file for key: " + key);
-            }
+        if (deleteFile(key)) {
+            System.out.println("Deleted file for key: " + key);
         }
     }
 
@@ -158,6 +601,28 @@ public class JsonPlayerStore<T> implements Store<T> {
         return file.exists();
     }
 
+    /**
+     * Lists the keys from the file names in the directory, without reading any file.
+     *
+     * @return A new collection of every stored key.
+     */
+    @Override
+    public Collection<String> keys() {
+        Set<String> keys = new LinkedHashSet<>(cache.asMap().keySet());
+        String[] files = directory.list((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            for (String fileName : files) {
+                keys.add(fileName.substring(0, fileName.length() - ".json".length()));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public long count() {
+        return keys().size();
+    }
+
     /**
      * Retrieves all player data stored in this store.
      * This includes data from both the in-memory cache and files on the disk.
@@ -167,16 +632,17 @@ public class JsonPlayerStore<T> implements Store<T> {
     @Override
     public Map<String, T> values() {
         // Ensure the returned map is always non-null
-        Map<String, T> allValues = new ConcurrentHashMap<>(cache);
+        Map<String, T> cached = cache.asMap();
+        Map<String, T> allValues = new ConcurrentHashMap<>(cached);
 
         // Add values from files if they are not already in the cache
         File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
         if (files != null) {
             for (File file : files) {
                 String key = file.getName().replace(".json", "");
-                if (!cache.containsKey(key)) {
+                if (!cached.containsKey(key)) {
                     try (FileReader reader = new FileReader(file)) {
-                        T value = GSON.fromJson(reader, entityType);
+                        T value = gson.fromJson(reader, entityType);
                         if (value != null) {
                             allValues.put(key, value);
                         }
@@ -1,18 +1,36 @@
 package gg.supervisor.core.repository.store;
 
+import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import gg.supervisor.core.loader.SupervisorLoader;
+import gg.supervisor.core.repository.query.EntityIndex;
+import gg.supervisor.core.repository.query.PropertyAccessor;
+import gg.supervisor.core.repository.query.Query;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-
-import static gg.supervisor.core.loader.SupervisorLoader.GSON;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * The {@code JsonStore} class provides a storage mechanism for managing entities in JSON format.
@@ -31,21 +49,45 @@ import static gg.supervisor.core.loader.SupervisorLoader.GSON;
  *     reducing file I/O operations and improving overall performance.</li>
  *     <li><strong>Asynchronous File Writes:</strong> Updates to the storage file are written
  *     asynchronously to avoid blocking the main thread, enhancing responsiveness.</li>
+ *     <li><strong>Indexed Queries:</strong> Properties used by derived query methods are indexed,
+ *     so {@code findByX} and {@code countByX} do not scan every entity.</li>
  * </ul>
  *
  * @param <T> The type of entities being managed by the {@code JsonStore}.
  */
 public class JsonStore<T> implements Store<T> {
 
+    // Thread writing the files of every JsonStore; a store never queues more than one write at a time
+    private static final ExecutorService FILE_IO = createFileExecutor();
+
     // Path to the JSON file where data is persisted
     private final File file;
 
     // The type of entity that this store will manage
     private final Class<T> entityType;
 
+    // Serializer for the repository's profile, compact unless the repository asks otherwise
+    private final Gson gson;
+
     // In-memory cache for faster access to stored data
     private final Map<String, T> cache;
 
+    // Secondary indexes for the repository's query methods, maintained on save and delete
+    private final EntityIndex<T> index = new EntityIndex<>();
+
+    // Set when the cache holds changes that are not on disk yet
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    // Set while a write is queued and has not started; kept apart from dirty so a failed write never
+    // stops later saves from scheduling the retry
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Serializes writes to the file, the scheduled write and a flush may otherwise overlap
+    private final Object writeLock = new Object();
+
+    // The most recently scheduled write, awaited by flush
+    private volatile CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+
     /**
      * Constructs a new {@code JsonStore} with the given file and entity type.
      * The data is loaded from the file into the in-memory cache during initialization.
@@ -54,8 +96,20 @@ public class JsonStore<T> implements Store<T> {
      * @param entityType The class type of the entities being managed.
      */
     public JsonStore(File file, Class<T> entityType) {
+        this(file, entityType, SupervisorLoader.STORAGE_GSON);
+    }
+
+    /**
+     * Constructs a new {@code JsonStore} that serializes through the given {@code Gson} instance.
+     *
+     * @param file       The JSON file where the data is stored.
+     * @param entityType The class type of the entities being managed.
+     * @param gson       The serializer, see {@link SupervisorLoader#getGson}.
+     */
+    public JsonStore(File file, Class<T> entityType, Gson gson) {
         this.file = file;
         this.entityType = entityType;
+        this.gson = gson;
         this.cache = loadFromFile(); // Load the data from the file into the cache
     }
 
@@ -80,6 +134,7 @@ public class JsonStore<T> implements Store<T> {
     @Override
     public void save(String key, T value) {
         cache.put(key, value);
+        index.put(key, value);
         saveToFile(); // Persist changes to the file
     }
 
@@ -92,9 +147,67 @@ public class JsonStore<T> implements Store<T> {
     @Override
     public void delete(String key) {
         cache.remove(key);
+        index.remove(key);
         saveToFile(); // Persist changes to the file
     }
 
+    /**
+     * Streams the cache directly, without the copy {@link #values()} makes. The stream is weakly consistent:
+     * it never fails because of concurrent saves, but may or may not include them.
+     *
+     * @return A stream of immutable key-value pairs.
+     */
+    @Override
+    public Stream<Map.Entry<String, T>> stream() {
+        return cache.entrySet().stream().map(entry -> Map.entry(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Saves several entities with a single rewrite of the file.
+     *
+     * @param values The entities to save by key.
+     */
+    @Override
+    public void saveAll(Map<String, T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        values.forEach((key, value) -> {
+            cache.put(key, value);
+            index.put(key, value);
+        });
+        saveToFile();
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = cache.get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Deletes several entities with a single rewrite of the file.
+     *
+     * @param keys The keys of the entities to delete.
+     */
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            cache.remove(key);
+            index.remove(key);
+        }
+        saveToFile();
+    }
+
     /**
      * Checks whether an entity with the given key exists in the store.
      *
@@ -106,6 +219,16 @@ public class JsonStore<T> implements Store<T> {
         return cache.containsKey(key);
     }
 
+    @Override
+    public Collection<String> keys() {
+        return new ArrayList<>(cache.keySet());
+    }
+
+    @Override
+    public long count() {
+        return cache.size();
+    }
+
     /**
      * Returns all entities in the store as a map of key-value pairs.
      *
@@ -117,6 +240,76 @@ public class JsonStore<T> implements Store<T> {
         return new HashMap<>(cache);
     }
 
+    /**
+     * Reads from the cache on the calling thread, the executor is not needed since nothing blocks.
+     */
+    @Override
+    public CompletableFuture<T> getAsync(String key, Executor executor) {
+        return CompletableFuture.completedFuture(get(key));
+    }
+
+    /**
+     * Updates the cache on the calling thread; the file write is already asynchronous.
+     */
+    @Override
+    public CompletableFuture<Void> saveAsync(String key, T value, Executor executor) {
+        save(key, value);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String key, Executor executor) {
+        delete(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, T>> valuesAsync(Executor executor) {
+        return CompletableFuture.completedFuture(values());
+    }
+
+    /**
+     * Indexes a queried property over every cached entity.
+     *
+     * @param property The queried property.
+     * @param sorted   {@code true} if range queries are declared on the property.
+     */
+    @Override
+    public void registerIndex(PropertyAccessor property, boolean sorted) {
+        if (index.register(property, sorted)) {
+            index.rebuild(cache);
+        }
+    }
+
+    /**
+     * Answers a query from the property's index, falling back to a scan of the cache if it is not indexed.
+     *
+     * @param query The condition on one property.
+     * @return The matching entities by key.
+     */
+    @Override
+    public Map<String, T> query(Query query) {
+        Set<String> keys = index.keys(query);
+        if (keys == null) {
+            return Store.super.query(query);
+        }
+
+        Map<String, T> matches = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = cache.get(key);
+            if (value != null) {
+                matches.put(key, value);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public long count(Query query) {
+        Set<String> keys = index.keys(query);
+        return keys != null ? keys.size() : Store.super.count(query);
+    }
+
     /**
      * Loads data from the JSON file into an in-memory cache.
      * If the file does not exist, an empty cache is created.
@@ -129,7 +322,7 @@ public class JsonStore<T> implements Store<T> {
         }
         try (FileReader reader = new FileReader(file)) {
             Type type = TypeToken.getParameterized(Map.class, String.class, entityType).getType();
-            Map<String, T> loadedCache = GSON.fromJson(reader, type);
+            Map<String, T> loadedCache = gson.fromJson(reader, type);
             return loadedCache != null ? new ConcurrentHashMap<>(loadedCache) : new ConcurrentHashMap<>();
         } catch (IOException e) {
             e.printStackTrace();
@@ -138,26 +331,77 @@ public class JsonStore<T> implements Store<T> {
     }
 
     /**
-     * Persists the in-memory cache to the JSON file asynchronously.
-     * If the file or its parent directories do not exist, they are created.
+     * Writes any pending change to the file and waits until it is on disk.
+     * Called by the loader while the plugin is disabling.
      */
-    private void saveToFile() {
+    @Override
+    public void flush() {
         try {
-            if (!file.exists()) {
-                file.getParentFile().mkdirs(); // Create parent directories if they don't exist
-                file.createNewFile(); // Create the file if it doesn't exist
+            pendingWrite.join();
+        } catch (CompletionException e) {
+            e.printStackTrace();
+        }
+        writeIfDirty();
+    }
+
+    /**
+     * Schedules the in-memory cache to be persisted to the JSON file asynchronously.
+     * Changes made while a write is already scheduled are coalesced into that write, so a burst of
+     * saves rewrites the file once instead of once per save.
+     */
+    private void saveToFile() {
+        dirty.set(true);
+        if (scheduled.getAndSet(true)) {
+            return; // A write is already queued and will pick up this change
+        }
+
+        // Save to file asynchronously to avoid blocking the main thread
+        pendingWrite = CompletableFuture.runAsync(() -> {
+            scheduled.set(false); // Saves from now on need another write
+            writeIfDirty();
+        }, FILE_IO);
+    }
+
+    private static ExecutorService createFileExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Json Store I/O");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Writes the cache to a temporary file and moves it over the real one, so a crash mid-write never
+     * leaves a truncated file behind. If the file or its parent directories do not exist, they are created.
+     */
+    private void writeIfDirty() {
+        synchronized (writeLock) {
+            if (!dirty.getAndSet(false)) {
+                return;
             }
 
-            // Save to file asynchronously to avoid blocking the main thread
-            CompletableFuture.runAsync(() -> {
-                try (FileWriter writer = new FileWriter(file)) {
-                    GSON.toJson(cache, writer);
-                } catch (IOException e) {
-                    e.printStackTrace();
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.exists()) {
+                parent.mkdirs(); // Create parent directories if they don't exist
+            }
+
+            File temp = new File(parent, file.getName() + ".tmp");
+            try {
+                try (FileWriter writer = new FileWriter(temp)) {
+                    gson.toJson(cache, writer);
                 }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                dirty.set(true); // Keep the change, the next save schedules the retry and flush writes it
+                e.printStackTrace();
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+package gg.supervisor.core.repository.store;
+
+/**
+ * An immutable snapshot of how many saves a store wrote and how many it skipped because the entity had
+ * not changed, see {@link ChangeTracker}.
+ */
+public final class SaveStats {
+
+    private final long writeCount;
+    private final long skipCount;
+
+    public SaveStats(long writeCount, long skipCount) {
+        this.writeCount = writeCount;
+        this.skipCount = skipCount;
+    }
+
+    /**
+     * @return The number of entities written to storage.
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return The number of saves that wrote nothing because the entity was unchanged.
+     */
+    public long getSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * @return The ratio of saves that were skipped, or {@code 0} if there were none.
+     */
+    public double getSkipRate() {
+        long saves = writeCount + skipCount;
+        return saves == 0 ? 0 : (double) skipCount / saves;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d written, %d unchanged skipped (%.1f%% skip rate)", writeCount, skipCount, getSkipRate() * 100);
+    }
+}
@@ -1,6 +1,16 @@
 package gg.supervisor.core.repository.store;
 
+import gg.supervisor.core.repository.cache.CacheStats;
+import gg.supervisor.core.repository.query.PropertyAccessor;
+import gg.supervisor.core.repository.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * The {@code Store} interface provides a contract for managing the persistence and retrieval of key-value pairs.
@@ -88,4 +98,268 @@ public interface Store<T> {
      * @return A map containing all key-value pairs currently stored. If the store is empty, returns an empty map.
      */
     Map<String, T> values();
+
+    /**
+     * Lists every key without loading the values.
+     * <p>
+     * Stores answer this from their cache, a directory listing or an {@code _id} projection, so listing keys
+     * for tab completion or admin commands does not deserialize any entity. The default implementation uses
+     * {@link #values()}.
+     * </p>
+     *
+     * @return A new collection of every key. If the store is empty, returns an empty collection.
+     */
+    default Collection<String> keys() {
+        return new ArrayList<>(values().keySet());
+    }
+
+    /**
+     * Counts the stored items without loading them, see {@link #keys()}.
+     *
+     * @return The number of stored items.
+     */
+    default long count() {
+        return keys().size();
+    }
+
+    /**
+     * Streams every key-value pair without loading them all into memory at once.
+     * <p>
+     * Stores backed by files or a database read lazily, a bounded batch at a time, so iterating a store with
+     * hundreds of thousands of entries needs constant memory, and stopping early (for example with
+     * {@code limit} or {@code findFirst}) stops reading. The stream may hold a file handle or database cursor
+     * and must be closed, preferably with try-with-resources. The default implementation streams {@link #values()}.
+     * </p>
+     *
+     * @return A sequential stream of the stored pairs, which must be closed after use.
+     */
+    default Stream<Map.Entry<String, T>> stream() {
+        return values().entrySet().stream();
+    }
+
+    /**
+     * Saves several items at once.
+     * <p>
+     * The default implementation saves them one by one. Stores override it to write the whole batch at once,
+     * for example with a single file rewrite or one database round trip.
+     * </p>
+     *
+     * @param values The items to save by key.
+     */
+    default void saveAll(Map<String, T> values) {
+        values.forEach(this::save);
+    }
+
+    /**
+     * Retrieves several items at once, see {@link #saveAll(Map)}.
+     *
+     * @param keys The keys to look up.
+     * @return The items that exist, by key. Keys without an item are not part of the map.
+     */
+    default Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Deletes several items at once, see {@link #saveAll(Map)}.
+     *
+     * @param keys The keys of the items to delete.
+     */
+    default void deleteAll(Collection<String> keys) {
+        keys.forEach(this::delete);
+    }
+
+    /**
+     * Retrieves an item without blocking the calling thread.
+     * <p>
+     * The default implementation runs {@link #get(String)} on the given executor, which is the key's lane of the
+     * repository's {@link StoreExecutor}. Stores with a non-blocking backend may override this and ignore the executor.
+     * </p>
+     *
+     * @param key      The key used to identify the item.
+     * @param executor The executor for blocking I/O on this key.
+     * @return A future completed with the value, or with {@code null} if the key does not exist.
+     */
+    default CompletableFuture<T> getAsync(String key, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> get(key), executor);
+    }
+
+    /**
+     * Saves an item without blocking the calling thread, see {@link #getAsync(String, Executor)}.
+     *
+     * @param key      The key used to identify the item.
+     * @param value    The value to be associated with the key.
+     * @param executor The executor for blocking I/O on this key.
+     * @return A future completed once the value is saved.
+     */
+    default CompletableFuture<Void> saveAsync(String key, T value, Executor executor) {
+        return CompletableFuture.runAsync(() -> save(key, value), executor);
+    }
+
+    /**
+     * Deletes an item without blocking the calling thread, see {@link #getAsync(String, Executor)}.
+     *
+     * @param key      The key used to identify the item to be deleted.
+     * @param executor The executor for blocking I/O on this key.
+     * @return A future completed once the item is deleted.
+     */
+    default CompletableFuture<Void> deleteAsync(String key, Executor executor) {
+        return CompletableFuture.runAsync(() -> delete(key), executor);
+    }
+
+    /**
+     * Retrieves all key-value pairs without blocking the calling thread, see {@link #getAsync(String, Executor)}.
+     *
+     * @param executor The executor for blocking I/O.
+     * @return A future completed with a map of all key-value pairs.
+     */
+    default CompletableFuture<Map<String, T>> valuesAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(this::values, executor);
+    }
+
+    /**
+     * Retrieves the entities matching a query, used by the derived query methods of repositories.
+     * <p>
+     * The default implementation filters {@link #values()} in memory. Stores that keep every entity in memory
+     * answer from the indexes declared through {@link #registerIndex}, database stores push the condition down
+     * to the database.
+     * </p>
+     *
+     * @param query The condition on one property.
+     * @return The matching entities by key. If nothing matches, returns an empty map.
+     */
+    default Map<String, T> query(Query query) {
+        Map<String, T> matches = new LinkedHashMap<>();
+        values().forEach((key, value) -> {
+            if (value != null && query.matches(value)) {
+                matches.put(key, value);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Counts the entities matching a query.
+     *
+     * @param query The condition on one property.
+     * @return The number of matching entities.
+     */
+    default long count(Query query) {
+        return query(query).size();
+    }
+
+    /**
+     * Checks whether any entity matches a query.
+     *
+     * @param query The condition on one property.
+     * @return {@code true} if at least one entity matches.
+     */
+    default boolean exists(Query query) {
+        return count(query) > 0;
+    }
+
+    /**
+     * Declares that a property is queried, so the store can maintain an index for it.
+     * <p>
+     * Called once per query method when the repository proxy is created. Stores without indexes ignore it.
+     * </p>
+     *
+     * @param property The queried property.
+     * @param sorted   {@code true} if range queries are declared on the property.
+     */
+    default void registerIndex(PropertyAccessor property, boolean sorted) {
+    }
+
+    /**
+     * Writes any state that is only held in memory to the underlying storage.
+     * <p>
+     * The loader calls this for every store while the plugin is disabling, in parallel with the other
+     * stores and bounded by a shutdown deadline. Implementations should block until the data is durable,
+     * must be safe to call from any thread and may be called more than once. Stores that persist every
+     * change immediately do not need to override it.
+     * </p>
+     */
+    default void flush() {
+    }
+
+    /**
+     * Writes the in-memory state of one key to the underlying storage, for example when its player quits.
+     * <p>
+     * Only stores that buffer changes, such as {@link WriteBehindStore}, need to override this.
+     * </p>
+     *
+     * @param key The key to write.
+     */
+    default void flush(String key) {
+    }
+
+    /**
+     * Returns the key's entity if the store holds it in memory, without reading storage. Used where blocking
+     * I/O is not allowed, such as on the server thread.
+     *
+     * @param key The key to look up.
+     * @return The cached entity, or {@code null} if it is not cached or the store has no cache.
+     */
+    default T getIfCached(String key) {
+        return null;
+    }
+
+    /**
+     * Keeps the key's entity in the store's cache until {@link #unpin(String)} is called, for example while
+     * its player is online. The key may be pinned before its entity is loaded. Stores without a bounded
+     * cache ignore it.
+     *
+     * @param key The key to pin.
+     */
+    default void pin(String key) {
+    }
+
+    /**
+     * Makes the key's entity evictable again.
+     *
+     * @param key The key to unpin.
+     */
+    default void unpin(String key) {
+    }
+
+    /**
+     * Drops the key's entity from the store's cache unless the key is pinned. The stored entity is not
+     * changed, it is loaded again on its next use. Stores without a cache ignore it.
+     *
+     * @param key The key to evict.
+     */
+    default void evict(String key) {
+    }
+
+    /**
+     * @return The counters of the store's entity cache, or {@code null} if the store has no cache.
+     */
+    default CacheStats getCacheStats() {
+        return null;
+    }
+
+    /**
+     * @return The number of saves written and skipped as unchanged, or {@code null} if the store writes
+     * every save.
+     */
+    default SaveStats getSaveStats() {
+        return null;
+    }
+
+    /**
+     * Releases resources held by the store, such as open connections.
+     * <p>
+     * Called once after {@link #flush()} has completed while the plugin is disabling. The store must not be
+     * used afterwards.
+     * </p>
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,143 @@
+package gg.supervisor.core.repository.store;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The I/O executor of one store, which runs the asynchronous repository operations off the server thread.
+ *
+ * <p>Work is spread over a small number of lanes, each a single thread with a bounded queue. Operations on
+ * the same key always run on the same lane, in the order they were submitted, so {@code saveAsync} followed
+ * by {@code findAsync} for one key sees the saved value, and two saves of one key never overtake each other.</p>
+ *
+ * <p>When a lane's queue is full the submitting thread waits for room. That slows the caller down instead of
+ * dropping a save, growing the queue without bound or letting a save overtake an earlier one. Idle lane
+ * threads exit after a while, so stores that are rarely used asynchronously cost no threads.</p>
+ *
+ * <p>The lane count and queue capacity default to {@code -Dsupervisor.io.threads} (2) and
+ * {@code -Dsupervisor.io.queue} (1024).</p>
+ */
+public final class StoreExecutor implements Executor {
+
+    public static final int DEFAULT_THREADS = Integer.getInteger("supervisor.io.threads", 2);
+    public static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("supervisor.io.queue", 1024);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    public StoreExecutor(String name) {
+        this(name, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param name          The name used for the lane threads, usually the repository name.
+     * @param threads       The number of lanes.
+     * @param queueCapacity The number of tasks each lane may queue before callers have to wait.
+     */
+    public StoreExecutor(String name, int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Store executor needs at least one thread and a queue capacity of at least one");
+        }
+
+        this.name = name;
+        this.lanes = new ThreadPoolExecutor[threads];
+
+        // Drivers such as Mongo resolve classes through the context class loader, keep the plugin's
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        for (int i = 0; i < threads; i++) {
+            String threadName = "Supervisor I/O " + name + " #" + (i + 1);
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            }, StoreExecutor::reject);
+            lane.allowCoreThreadTimeOut(true);
+            lanes[i] = lane;
+        }
+    }
+
+    private static void reject(Runnable task, ThreadPoolExecutor lane) {
+        try {
+            if (!lane.isShutdown()) {
+                // Back-pressure: wait for room rather than running the task out of order
+                lane.getQueue().put(task);
+                if (!lane.isShutdown() || !lane.getQueue().remove(task)) {
+                    return;
+                }
+            }
+
+            // Never drop a task after shutdown, run it once the tasks queued before it are done
+            lane.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            task.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the I/O queue", e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the executor for operations on one key. Tasks submitted through it run in submission order.
+     *
+     * @param key The entity key.
+     * @return The lane of the key.
+     */
+    public Executor forKey(String key) {
+        return lanes[Math.floorMod(key != null ? key.hashCode() : 0, lanes.length)];
+    }
+
+    /**
+     * Runs a task that is not tied to a key, such as loading every value, on the next lane.
+     */
+    @Override
+    public void execute(Runnable command) {
+        lanes[Math.floorMod(nextLane.getAndIncrement(), lanes.length)].execute(command);
+    }
+
+    /**
+     * @return The number of tasks waiting in all lanes.
+     */
+    public int getQueuedTasks() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stops accepting work and waits for every queued task to finish. Tasks submitted afterwards run on the
+     * calling thread once the queued ones are done. Called by the loader before the store is flushed, so no
+     * asynchronous save is lost.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return {@code true} if every lane finished in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
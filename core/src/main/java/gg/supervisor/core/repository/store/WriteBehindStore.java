@@ -0,0 +1,510 @@
+package gg.supervisor.core.repository.store;
+
+import gg.supervisor.core.repository.cache.CacheStats;
+import gg.supervisor.core.repository.query.PropertyAccessor;
+import gg.supervisor.core.repository.query.Query;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The {@code WriteBehindStore} wraps any {@link Store} and buffers its saves and deletes in memory, writing
+ * them to the wrapped store in batches.
+ *
+ * <p>Every save or delete only marks its key dirty with the latest value, so a key saved a hundred times
+ * between two flushes is written once. A flush hands all dirty keys to the wrapped store's
+ * {@link Store#saveAll(Map)} and {@link Store#deleteAll(Collection)}, which backends implement as a single
+ * file rewrite or bulk write.</p>
+ *
+ * <p><strong>Key Features:</strong></p>
+ * <ul>
+ *     <li><strong>Read Your Writes:</strong> Reads, key listings, streams and queries see buffered changes
+ *     before they reach the wrapped store.</li>
+ *     <li><strong>Interval and Size Flushes:</strong> A background thread flushes on a fixed interval, and as
+ *     soon as the number of dirty keys reaches the flush threshold.</li>
+ *     <li><strong>Back-Pressure:</strong> Once the number of dirty keys reaches the pending limit, the saving
+ *     thread starts a background flush and waits up to one tick for it to make room. The write itself never
+ *     runs on the saving thread, which is usually the server thread; if the flush falls behind, the change is
+ *     accepted beyond the limit and a warning is logged.</li>
+ *     <li><strong>Flush Now:</strong> {@link #flush()} writes everything and {@link #flush(String)} writes one
+ *     key, for shutdown and player quit.</li>
+ * </ul>
+ *
+ * <p>A change is only removed from the buffer once the wrapped store has accepted it and no newer change
+ * was made to the key in the meantime. Every change gets a new version, so saving the same, mutated instance
+ * again while it is being written keeps the key buffered. A failed flush keeps the changes buffered and is
+ * retried.</p>
+ *
+ * @param <T> The type of the entities managed by the store.
+ */
+public class WriteBehindStore<T> implements Store<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindStore.class.getName());
+
+    // Marks a buffered delete, entities can never be this instance
+    private static final Object DELETED = new Object();
+
+    // How long a save waits for the background flush once the buffer is full, one server tick
+    private static final long BACK_PRESSURE_WAIT_MILLIS = 50;
+
+    private final Store<T> delegate;
+    private final String name;
+    private final int flushThreshold;
+    private final int maxPending;
+
+    // Latest unwritten change per key
+    private final Map<String, Pending> dirty = new ConcurrentHashMap<>();
+
+    // Version of the latest change, so a flush only clears a key that was not changed again meanwhile
+    private final AtomicLong version = new AtomicLong();
+
+    // One flush at a time, so a slow flush is never overtaken by a newer one with older values
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+
+    // Notified after every write, wakes saves waiting for room in a full buffer
+    private final Object drained = new Object();
+    // Set once a full buffer was warned about, cleared when a flush made room again
+    private final AtomicBoolean overflowReported = new AtomicBoolean();
+
+    // Changes accepted and changes written, for the coalescing rate
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * Wraps a store.
+     *
+     * @param delegate       The store the changes are written to.
+     * @param name           The name used for the flush thread, usually the repository name.
+     * @param flushInterval  The time between two background flushes, in milliseconds.
+     * @param flushThreshold The number of dirty keys that triggers a background flush.
+     * @param maxPending     The number of dirty keys at which callers wait for the background flush before adding more.
+     */
+    public WriteBehindStore(Store<T> delegate, String name, long flushInterval, int flushThreshold, int maxPending) {
+        if (flushInterval <= 0 || flushThreshold < 1 || maxPending < flushThreshold) {
+            throw new IllegalArgumentException("Invalid write-behind settings for " + name
+                    + ": the interval must be positive and 1 <= flushThreshold <= maxPending");
+        }
+
+        this.delegate = delegate;
+        this.name = name;
+        this.flushThreshold = flushThreshold;
+        this.maxPending = maxPending;
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Write-Behind " + name);
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushInBackground, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public Store<T> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return The number of keys with a change that has not been written yet.
+     */
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    /**
+     * @return The ratio of saves and deletes that did not cause a write because a later change replaced them,
+     * between 0 and 1.
+     */
+    public double getCoalescingRate() {
+        long total = changes.get();
+        return total == 0 ? 0 : 1 - Math.min(total, writes.get()) / (double) total;
+    }
+
+    @Override
+    public T get(String key) {
+        Pending pending = dirty.get(key);
+        if (pending != null) {
+            return pending.value == DELETED ? null : castValue(pending.value);
+        }
+        return delegate.get(key);
+    }
+
+    @Override
+    public void save(String key, T value) {
+        mark(key, value);
+    }
+
+    @Override
+    public void delete(String key) {
+        mark(key, DELETED);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        Pending pending = dirty.get(key);
+        if (pending != null) {
+            return pending.value != DELETED;
+        }
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public Map<String, T> values() {
+        Map<String, Object> pending = pendingValues(); // Before the delegate, see overlay
+        return overlay(delegate.values(), pending);
+    }
+
+    @Override
+    public Collection<String> keys() {
+        if (dirty.isEmpty()) {
+            return delegate.keys();
+        }
+
+        Map<String, Object> pending = pendingValues();
+        Set<String> keys = new LinkedHashSet<>(delegate.keys());
+        pending.forEach((key, value) -> {
+            if (value == DELETED) {
+                keys.remove(key);
+            } else {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
+    @Override
+    public long count() {
+        return dirty.isEmpty() ? delegate.count() : keys().size();
+    }
+
+    @Override
+    public Stream<Map.Entry<String, T>> stream() {
+        if (dirty.isEmpty()) {
+            return delegate.stream();
+        }
+
+        Map<String, Object> pending = pendingValues();
+        Stream<Map.Entry<String, T>> stored = delegate.stream().filter(entry -> !pending.containsKey(entry.getKey()));
+        Stream<Map.Entry<String, T>> buffered = pending.entrySet().stream()
+                .filter(entry -> entry.getValue() != DELETED)
+                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), castValue(entry.getValue())));
+        return Stream.concat(stored, buffered);
+    }
+
+    @Override
+    public void saveAll(Map<String, T> values) {
+        values.forEach(this::mark);
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new LinkedHashMap<>();
+        List<String> stored = new ArrayList<>();
+        for (String key : keys) {
+            Pending pending = dirty.get(key);
+            if (pending == null) {
+                stored.add(key);
+            } else if (pending.value != DELETED) {
+                found.put(key, castValue(pending.value));
+            }
+        }
+
+        if (!stored.isEmpty()) {
+            found.putAll(delegate.getAll(stored));
+        }
+        return found;
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        keys.forEach(key -> mark(key, DELETED));
+    }
+
+    @Override
+    public Map<String, T> query(Query query) {
+        if (dirty.isEmpty()) {
+            return delegate.query(query);
+        }
+
+        Map<String, Object> pending = pendingValues();
+        Map<String, T> matches = new LinkedHashMap<>(delegate.query(query));
+        pending.forEach((key, value) -> {
+            if (value == DELETED || !query.matches(value)) {
+                matches.remove(key);
+            } else {
+                matches.put(key, castValue(value));
+            }
+        });
+        return matches;
+    }
+
+    @Override
+    public long count(Query query) {
+        return dirty.isEmpty() ? delegate.count(query) : query(query).size();
+    }
+
+    @Override
+    public boolean exists(Query query) {
+        return dirty.isEmpty() ? delegate.exists(query) : !query(query).isEmpty();
+    }
+
+    @Override
+    public void registerIndex(PropertyAccessor property, boolean sorted) {
+        delegate.registerIndex(property, sorted);
+    }
+
+    /**
+     * Buffering never blocks on I/O, so the change is applied on the calling thread.
+     */
+    @Override
+    public CompletableFuture<Void> saveAsync(String key, T value, Executor executor) {
+        save(key, value);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String key, Executor executor) {
+        delete(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Writes every buffered change to the wrapped store, then flushes the wrapped store. Called on shutdown;
+     * background and back-pressure flushes only write the buffer, since flushing a player store rewrites every
+     * cached profile.
+     */
+    @Override
+    public void flush() {
+        writeBuffer();
+        delegate.flush();
+    }
+
+    /**
+     * Writes the buffered change of one key, if any, for example when its player quits.
+     *
+     * @param key The key to write.
+     */
+    @Override
+    public void flush(String key) {
+        flushLock.lock();
+        try {
+            Pending pending = dirty.get(key);
+            if (pending != null) {
+                writeDirty(Map.of(key, pending));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public T getIfCached(String key) {
+        Pending pending = dirty.get(key);
+        if (pending != null) {
+            return pending.value == DELETED ? null : castValue(pending.value);
+        }
+        return delegate.getIfCached(key);
+    }
+
+    @Override
+    public void pin(String key) {
+        delegate.pin(key);
+    }
+
+    @Override
+    public void unpin(String key) {
+        delegate.unpin(key);
+    }
+
+    @Override
+    public void evict(String key) {
+        delegate.evict(key); // Reads still see a change that is buffered here
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return delegate.getCacheStats();
+    }
+
+    @Override
+    public SaveStats getSaveStats() {
+        return delegate.getSaveStats();
+    }
+
+    /**
+     * Stops the background flushes and closes the wrapped store. The loader flushes every store before closing
+     * it, so only changes buffered since are written here; the wrapped store is not flushed a second time.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            writeBuffer();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private void mark(String key, Object value) {
+        if (dirty.size() >= maxPending && !dirty.containsKey(key)) {
+            awaitRoom();
+        }
+
+        dirty.put(key, new Pending(value, version.incrementAndGet()));
+        changes.incrementAndGet();
+
+        if (dirty.size() >= flushThreshold) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Back-pressure: waits a bounded time for the background flush to make room. The change is accepted either
+     * way, a save is never dropped and never written on the caller's thread.
+     */
+    private void awaitRoom() {
+        requestFlush();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BACK_PRESSURE_WAIT_MILLIS);
+        synchronized (drained) {
+            long remaining;
+            while (dirty.size() >= maxPending && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(drained, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (dirty.size() >= maxPending && overflowReported.compareAndSet(false, true)) {
+            LOGGER.warning("Write-behind buffer of " + name + " is full (" + dirty.size() + " changes), the flush does not keep up");
+        }
+    }
+
+    private void requestFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushInBackground);
+            } catch (RuntimeException e) {
+                flushScheduled.set(false); // Closed, the shutdown flush picks the change up
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        flushScheduled.set(false);
+        try {
+            writeBuffer();
+        } catch (Exception e) {
+            // Changes stay buffered and are retried on the next interval
+            LOGGER.log(Level.WARNING, "Write-behind flush of " + name + " failed, " + dirty.size() + " changes stay buffered", e);
+        }
+    }
+
+    private void writeBuffer() {
+        flushLock.lock();
+        try {
+            writeDirty(new HashMap<>(dirty));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeDirty(Map<String, Pending> snapshot) {
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        Map<String, T> saved = new LinkedHashMap<>();
+        List<String> deleted = new ArrayList<>();
+        snapshot.forEach((key, pending) -> {
+            if (pending.value == DELETED) {
+                deleted.add(key);
+            } else {
+                saved.put(key, castValue(pending.value));
+            }
+        });
+
+        if (!saved.isEmpty()) {
+            delegate.saveAll(saved);
+        }
+        if (!deleted.isEmpty()) {
+            delegate.deleteAll(deleted);
+        }
+        writes.addAndGet(snapshot.size());
+
+        // Keep keys that were changed again while they were being written, even to the same instance
+        snapshot.forEach((key, written) -> dirty.computeIfPresent(key, (k, current) -> current.version == written.version ? null : current));
+
+        if (dirty.size() < maxPending) {
+            overflowReported.set(false);
+        }
+        synchronized (drained) {
+            drained.notifyAll();
+        }
+    }
+
+    private Map<String, Object> pendingValues() {
+        Map<String, Object> values = new HashMap<>();
+        dirty.forEach((key, pending) -> values.put(key, pending.value));
+        return values;
+    }
+
+    /**
+     * Applies buffered changes to a map read from the wrapped store. The buffer must be copied before the
+     * store is read: a change flushed in between is then in both, while copying afterwards could miss it in both.
+     */
+    private Map<String, T> overlay(Map<String, T> stored, Map<String, Object> pending) {
+        Map<String, T> result = stored != null ? new HashMap<>(stored) : new HashMap<>();
+        pending.forEach((key, value) -> {
+            if (value == DELETED) {
+                result.remove(key);
+            } else {
+                result.put(key, castValue(value));
+            }
+        });
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T castValue(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * A buffered change: the saved value or {@code DELETED}, and the version it was made with.
+     */
+    private static final class Pending {
+
+        private final Object value;
+        private final long version;
+
+        private Pending(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package gg.supervisor.core.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Hands the results of asynchronous repository calls back to the server thread, where the Bukkit API may be used.
+ *
+ * <pre>{@code
+ * profileRepository.findAsync(uuid)
+ *         .thenAcceptAsync(profile -> player.sendMessage("Level " + profile.level), MainThread.executor(plugin));
+ *
+ * MainThread.accept(plugin, profileRepository.findAsync(uuid), profile -> player.sendMessage("Level " + profile.level));
+ * }</pre>
+ *
+ * <p>Tasks submitted from the server thread run immediately. Once the plugin is disabled the scheduler no longer
+ * accepts tasks, so they run on the completing thread instead of being lost.</p>
+ */
+public final class MainThread {
+
+    private MainThread() {
+    }
+
+    /**
+     * Returns an executor running tasks on the server thread, for use with the {@code *Async} methods of
+     * {@link CompletableFuture}.
+     *
+     * @param plugin The plugin scheduling the tasks.
+     * @return The executor.
+     */
+    public static Executor executor(Plugin plugin) {
+        return task -> {
+            if (Bukkit.isPrimaryThread() || !plugin.isEnabled()) {
+                task.run();
+            } else {
+                Bukkit.getScheduler().runTask(plugin, task);
+            }
+        };
+    }
+
+    /**
+     * Returns a future that completes on the server thread once the given future completes.
+     *
+     * @param plugin The plugin scheduling the completion.
+     * @param future The asynchronous result.
+     * @return A future with the same result, completed on the server thread.
+     */
+    public static <T> CompletableFuture<T> sync(Plugin plugin, CompletableFuture<T> future) {
+        return future.whenCompleteAsync((result, error) -> {
+        }, executor(plugin));
+    }
+
+    /**
+     * Passes the result of a future to a callback on the server thread. Failures are logged through the plugin's logger.
+     *
+     * @param plugin   The plugin scheduling the callback.
+     * @param future   The asynchronous result.
+     * @param callback The callback, run on the server thread.
+     * @return A future completed once the callback has run.
+     */
+    public static <T> CompletableFuture<Void> accept(Plugin plugin, CompletableFuture<T> future, Consumer<? super T> callback) {
+        return future.thenAcceptAsync(callback, executor(plugin)).exceptionally(error -> {
+            plugin.getLogger().severe("Asynchronous task failed: " + error);
+            error.printStackTrace();
+            return null;
+        });
+    }
+}
@@ -4,10 +4,11 @@ import gg.supervisor.core.annotation.Component;
 import gg.supervisor.core.loader.SupervisorLoader;
 import org.bukkit.plugin.Plugin;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The {@code Services} class is a utility for managing and accessing service instances across the system.
@@ -22,40 +23,119 @@ import java.util.Map;
  * <ul>
  *     <li><strong>Service Registration:</strong> Allows services to be registered with the central registry
  *     so they can be accessed anywhere within the system.</li>
+ *     <li><strong>Hierarchy Lookups:</strong> A service registered under a concrete class can also be retrieved
+ *     by any of its superclasses or interfaces, as long as exactly one registration matches. A lookup that
+ *     matches several fails rather than picking one. {@link #getRegistered(Class)} only matches the exact
+ *     type.</li>
  *     <li><strong>Lazy Loading:</strong> Dynamically loads components annotated with {@code @Component} if they
  *     are not already registered in the system.</li>
  *     <li><strong>Central Service Access:</strong> Facilitates consistent access to services, ensuring proper
  *     initialization and minimizing errors related to manual instantiation.</li>
  * </ul>
+ *
+ * <p><strong>Thread Safety:</strong> The registry may be read from any thread (for example from
+ * {@code AsyncPlayerPreLoginEvent} handlers) while it is being written. Resolved lookups are memoized per
+ * requested type through a {@link ClassValue}; every registration bumps a generation counter which
+ * invalidates those memoized results. A cached read is therefore lock-free and costs a {@code ClassValue}
+ * lookup plus two volatile reads.</p>
  */
 public class Services {
 
-    // Central registry for storing instances of services, accessible by their class type
-    private static final Map<Class<?>, Object> registeredServices = new HashMap<>();
+    // Central registry for storing instances of services, accessible by their class type.
+    // Components are wired from several loader threads, so the registry must be concurrent.
+    private static final Map<Class<?>, Object> registeredServices = new ConcurrentHashMap<>();
+
+    // Registration order of the keys above, so ambiguous lookups report their candidates in a stable order
+    private static final List<Class<?>> registrationOrder = new CopyOnWriteArrayList<>();
+
+    // Per requested type, the last resolution and the registry generation it was computed for
+    private static final ClassValue<Slot> lookupCache = new ClassValue<>() {
+        @Override
+        protected Slot computeValue(Class<?> type) {
+            return new Slot();
+        }
+    };
+
+    // Incremented on every change to the registry, invalidating all memoized lookups at once
+    private static volatile int generation;
 
     /**
      * Registers a service instance with the central registry.
      * This allows the service to be accessed anywhere by its class type.
      *
      * @param clazz The class type of the service.
-     * @param type  The instance of the service to be registered.
+     * @param type  The instance of the service to be registered, or {@code null} to remove the registration.
      */
     public static void register(Class<?> clazz, Object type) {
-        registeredServices.put(clazz, type);
+        synchronized (registrationOrder) {
+            if (type == null) {
+                registeredServices.remove(clazz);
+                registrationOrder.remove(clazz);
+            } else if (registeredServices.put(clazz, type) == null) {
+                registrationOrder.add(clazz);
+            }
+            generation++;
+        }
     }
 
     /**
-     * Retrieves a registered service instance by its class type.
+     * Retrieves a registered service instance by its class type. If nothing is registered under the exact
+     * type, the service registered under a subtype of it is returned.
      *
      * @param clazz The class type of the service to retrieve.
      * @param <T>   The type of the service.
      * @return The registered instance of the service, or {@code null} if no instance has been registered.
+     * @throws IllegalStateException If nothing is registered under the exact type and several services are
+     *                               registered under subtypes of it.
      */
     @SuppressWarnings("unchecked")
     public static <T> T getService(Class<T> clazz) {
+        Slot slot = lookupCache.get(clazz);
+        int current = generation;
+
+        Resolution resolution = slot.resolution;
+        if (resolution != null && resolution.generation == current) {
+            return (T) resolution.instance;
+        }
+
+        Object instance = resolve(clazz);
+        slot.resolution = new Resolution(current, instance);
+        return (T) instance;
+    }
+
+    /**
+     * Retrieves the service registered under exactly the given type, ignoring services registered under
+     * subtypes. The loader uses this to decide whether a component was already built.
+     *
+     * @param clazz The class type the service was registered under.
+     * @param <T>   The type of the service.
+     * @return The registered instance of the service, or {@code null} if none is registered under the type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getRegistered(Class<T> clazz) {
         return (T) registeredServices.get(clazz);
     }
 
+    private static Object resolve(Class<?> clazz) {
+        Object instance = registeredServices.get(clazz);
+        if (instance != null) {
+            return instance;
+        }
+
+        Class<?> match = null;
+        for (Class<?> registered : registrationOrder) {
+            if (!clazz.isAssignableFrom(registered) || !registeredServices.containsKey(registered)) {
+                continue;
+            }
+            if (match != null) {
+                throw new IllegalStateException("Several services match " + clazz.getName() + ": " + match.getName()
+                        + " and " + registered.getName() + "; request one of them by its own type");
+            }
+            match = registered;
+        }
+        return match != null ? registeredServices.get(match) : null;
+    }
+
     /**
      * Loads a service instance if it is present in the registry or attempts to create and register it if the
      * component is annotated with {@code @Component} but has not yet been loaded.
@@ -67,21 +147,16 @@ public class Services {
      * @param <T>   The type of the service.
      * @return The loaded instance of the service, or {@code null} if it cannot be created or found.
      */
-    @SuppressWarnings("unchecked")
     public static <T> T loadIfPresent(Class<T> clazz) {
         // Retrieve the instance from the registered services
-        T instance = (T) registeredServices.get(clazz);
+        T instance = getService(clazz);
 
         // If the instance is not already present and is marked with @Component, try to create it
         if (instance == null && clazz.isAnnotationPresent(Component.class)) {
             try {
-                // Use reflection to call the createComponentInstance method in SupervisorLoader
-                Method method = SupervisorLoader.class.getDeclaredMethod("createComponentInstance", Class.class, Plugin.class);
-                method.setAccessible(true);
-
                 // Create and return the service instance, registering it in the process
-                return (T) method.invoke(SupervisorLoader.class, clazz, (Plugin) registeredServices.get(Plugin.class));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+                return SupervisorLoader.loadComponent(clazz, getService(Plugin.class));
+            } catch (Exception e) {
                 throw new RuntimeException("Failed to load component: " + clazz.getName(), e);
             }
         }
@@ -91,9 +166,30 @@ public class Services {
     /**
      * Provides a map of all currently registered services.
      *
-     * @return A {@code Map} where each key is a {@code Class<?>} representing a service class, and each value is the service instance.
+     * @return An unmodifiable {@code Map} where each key is a {@code Class<?>} representing a service class,
+     * and each value is the service instance.
      */
     public static Map<Class<?>, Object> getRegisteredServices() {
-        return registeredServices;
+        return Collections.unmodifiableMap(registeredServices);
+    }
+
+    /**
+     * Mutable holder stored per requested type in the {@link ClassValue}.
+     */
+    private static final class Slot {
+        private volatile Resolution resolution;
+    }
+
+    /**
+     * An immutable lookup result tied to the registry generation it was computed for.
+     */
+    private static final class Resolution {
+        private final int generation;
+        private final Object instance;
+
+        private Resolution(int generation, Object instance) {
+            this.generation = generation;
+            this.instance = instance;
+        }
     }
 }
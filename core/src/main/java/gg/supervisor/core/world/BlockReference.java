@@ -0,0 +1,102 @@
+package gg.supervisor.core.world;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The position of a block, stored without loading its chunk.
+ *
+ * <p>Use this in stored entities instead of {@link Block}: reading it never touches the world or chunk I/O.
+ * The block is only looked up when {@link #resolve()} or {@link #resolveAsync()} is called.</p>
+ */
+public final class BlockReference {
+
+    private final WorldReference world;
+    private final int x;
+    private final int y;
+    private final int z;
+
+    public BlockReference(WorldReference world, int x, int y, int z) {
+        this.world = Objects.requireNonNull(world, "world");
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static BlockReference of(Block block) {
+        return new BlockReference(WorldReference.of(block.getWorld()), block.getX(), block.getY(), block.getZ());
+    }
+
+    public static BlockReference of(Location location) {
+        return new BlockReference(WorldReference.of(location.getWorld()), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public WorldReference getWorld() {
+        return world;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public ChunkReference getChunk() {
+        return new ChunkReference(world, x >> 4, z >> 4);
+    }
+
+    /**
+     * @return {@code true} if the world and the block's chunk are loaded, without loading either.
+     */
+    public boolean isLoaded() {
+        World resolved = world.resolve();
+        return resolved != null && resolved.isChunkLoaded(x >> 4, z >> 4);
+    }
+
+    /**
+     * Returns the block. Reading its state loads the chunk synchronously, so call this on the main thread
+     * and prefer {@link #resolveAsync()} when the chunk may not be loaded.
+     *
+     * @return The block, or {@code null} if the world is not loaded.
+     */
+    public Block resolve() {
+        World resolved = world.resolve();
+        return resolved != null ? resolved.getBlockAt(x, y, z) : null;
+    }
+
+    /**
+     * Loads the block's chunk through Paper's asynchronous chunk API.
+     *
+     * @return A future completed on the main thread with the block, or with {@code null} if the world is not loaded.
+     */
+    public CompletableFuture<Block> resolveAsync() {
+        return getChunk().resolveAsync().thenApply(chunk -> chunk != null ? chunk.getBlock(x & 15, y, z & 15) : null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlockReference other)) return false;
+        return x == other.x && y == other.y && z == other.z && world == other.world;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * world.hashCode() + x) + y) + z;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockReference{" + world + ", " + x + ", " + y + ", " + z + "}";
+    }
+}
@@ -0,0 +1,87 @@
+package gg.supervisor.core.world;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The position of a chunk, stored without loading it.
+ *
+ * <p>Use this in stored entities instead of {@link Chunk}: reading it never touches the world or chunk I/O.
+ * The chunk is only loaded when {@link #resolve()} or {@link #resolveAsync()} is called.</p>
+ */
+public final class ChunkReference {
+
+    private final WorldReference world;
+    private final int x;
+    private final int z;
+
+    public ChunkReference(WorldReference world, int x, int z) {
+        this.world = Objects.requireNonNull(world, "world");
+        this.x = x;
+        this.z = z;
+    }
+
+    public static ChunkReference of(Chunk chunk) {
+        return new ChunkReference(WorldReference.of(chunk.getWorld()), chunk.getX(), chunk.getZ());
+    }
+
+    public WorldReference getWorld() {
+        return world;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * @return {@code true} if the world and the chunk are loaded, without loading either.
+     */
+    public boolean isLoaded() {
+        World resolved = world.resolve();
+        return resolved != null && resolved.isChunkLoaded(x, z);
+    }
+
+    /**
+     * Returns the chunk, loading it synchronously if needed. Must be called on the main thread.
+     *
+     * @return The chunk, or {@code null} if the world is not loaded.
+     */
+    public Chunk resolve() {
+        World resolved = world.resolve();
+        return resolved != null ? resolved.getChunkAt(x, z) : null;
+    }
+
+    /**
+     * Loads the chunk through Paper's asynchronous chunk API.
+     *
+     * @return A future completed on the main thread with the chunk, or with {@code null} if the world is not loaded.
+     */
+    public CompletableFuture<Chunk> resolveAsync() {
+        World resolved = world.resolve();
+        return resolved != null ? resolved.getChunkAtAsync(x, z) : CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChunkReference other)) return false;
+        return x == other.x && z == other.z && world == other.world;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * world.hashCode() + x) + z;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkReference{" + world + ", " + x + ", " + z + "}";
+    }
+}
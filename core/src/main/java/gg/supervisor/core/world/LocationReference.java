@@ -0,0 +1,107 @@
+package gg.supervisor.core.world;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A location stored by world name, without resolving the world or loading its chunk.
+ *
+ * <p>Use this in stored entities instead of {@link Location}, for example for homes or warps: reading
+ * a profile never looks up a world or touches chunk I/O, and works even if the world loads later.
+ * Convert it with {@link #resolve()} when the location is actually used.</p>
+ */
+public final class LocationReference {
+
+    private final WorldReference world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final float yaw;
+    private final float pitch;
+
+    public LocationReference(WorldReference world, double x, double y, double z, float yaw, float pitch) {
+        this.world = Objects.requireNonNull(world, "world");
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
+    public static LocationReference of(Location location) {
+        return new LocationReference(WorldReference.of(location.getWorld()), location.getX(), location.getY(),
+                location.getZ(), location.getYaw(), location.getPitch());
+    }
+
+    public WorldReference getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public BlockReference getBlock() {
+        return new BlockReference(world, (int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z));
+    }
+
+    public ChunkReference getChunk() {
+        return new ChunkReference(world, (int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4);
+    }
+
+    /**
+     * Creates the Bukkit location. This does not load the chunk.
+     *
+     * @return The location, or {@code null} if the world is not loaded.
+     */
+    public Location resolve() {
+        World resolved = world.resolve();
+        return resolved != null ? new Location(resolved, x, y, z, yaw, pitch) : null;
+    }
+
+    /**
+     * Loads the location's chunk through Paper's asynchronous chunk API, e.g. before teleporting.
+     *
+     * @return A future completed on the main thread with the location, or with {@code null} if the world is not loaded.
+     */
+    public CompletableFuture<Location> resolveAsync() {
+        return getChunk().resolveAsync().thenApply(chunk -> chunk != null ? resolve() : null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocationReference other)) return false;
+        return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0 && Double.compare(z, other.z) == 0
+                && Float.compare(yaw, other.yaw) == 0 && Float.compare(pitch, other.pitch) == 0 && world == other.world;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(world, x, y, z, yaw, pitch);
+    }
+
+    @Override
+    public String toString() {
+        return "LocationReference{" + world + ", " + x + ", " + y + ", " + z + ", " + yaw + ", " + pitch + "}";
+    }
+}
@@ -0,0 +1,89 @@
+package gg.supervisor.core.world;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A world identified by name, resolved to the loaded {@link World} only when it is needed.
+ *
+ * <p>There is exactly one {@code WorldReference} per world name, so thousands of stored positions in the
+ * same world share one name string and one cached lookup. The resolved world is cached until the world
+ * unloads ({@link WorldReferenceListener} clears it), and a world that is not loaded yet is looked up
+ * again on the next call, so references read before the world loads work once it has.</p>
+ */
+public final class WorldReference {
+
+    private static final Map<String, WorldReference> REFERENCES = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    // Cached lookup, cleared when the world unloads so the server can release it
+    private volatile World world;
+
+    private WorldReference(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the shared reference for the given world name.
+     *
+     * @param name The world name.
+     * @return The reference, never {@code null}.
+     */
+    public static WorldReference of(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("World name cannot be null");
+        }
+        return REFERENCES.computeIfAbsent(name, WorldReference::new);
+    }
+
+    /**
+     * Returns the shared reference for the given world, caching it as already resolved.
+     *
+     * @param world The world.
+     * @return The reference, never {@code null}.
+     */
+    public static WorldReference of(World world) {
+        WorldReference reference = of(world.getName());
+        reference.world = world;
+        return reference;
+    }
+
+    static void invalidate(String name) {
+        WorldReference reference = REFERENCES.get(name);
+        if (reference != null) {
+            reference.world = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The world, or {@code null} if it is not loaded.
+     */
+    public World resolve() {
+        World resolved = world;
+        if (resolved == null) {
+            resolved = Bukkit.getWorld(name);
+            world = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * @return {@code true} if the world is currently loaded.
+     */
+    public boolean isLoaded() {
+        return resolve() != null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
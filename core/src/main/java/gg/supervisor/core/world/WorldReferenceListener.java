@@ -0,0 +1,18 @@
+package gg.supervisor.core.world;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Clears the cached world of every {@link WorldReference} when its world unloads, so references never
+ * keep an unloaded world alive. Registered by the loader.
+ */
+public class WorldReferenceListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        WorldReference.invalidate(event.getWorld().getName());
+    }
+}
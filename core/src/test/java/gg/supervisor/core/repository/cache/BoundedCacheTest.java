@@ -0,0 +1,169 @@
+package gg.supervisor.core.repository.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCacheTest {
+
+    @Test
+    void keepsAtMostTheMaximumSize() {
+        BoundedCache<String> cache = new BoundedCache<>(100, 0, TimeUnit.SECONDS);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertEquals(1_000 - cache.size(), cache.stats().getEvictionCount());
+    }
+
+    @Test
+    void frequentlyUsedEntriesSurviveAScan() {
+        BoundedCache<String> cache = new BoundedCache<>(100, 0, TimeUnit.SECONDS);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, "value");
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot" + i);
+            }
+        }
+
+        // One-off lookups, such as a leaderboard scan over offline players, while online players keep playing
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("cold" + i, "value");
+            if (i % 100 == 0) {
+                for (int j = 0; j < 50; j++) {
+                    cache.get("hot" + j);
+                }
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("value", cache.peek("hot" + i), "hot" + i + " was evicted by the scan");
+        }
+    }
+
+    @Test
+    void pinnedEntriesAreNeverEvicted() {
+        BoundedCache<String> cache = new BoundedCache<>(10, 0, TimeUnit.SECONDS);
+        cache.pin("online");
+        cache.put("online", "profile");
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("key" + i, "value");
+        }
+
+        assertEquals("profile", cache.peek("online"));
+        assertFalse(cache.evict("online"));
+        assertEquals(1, cache.stats().getPinnedCount());
+    }
+
+    @Test
+    void unpinnedEntriesCanBeEvictedAgain() {
+        BoundedCache<String> cache = new BoundedCache<>(10, 0, TimeUnit.SECONDS);
+        cache.put("quit", "profile");
+        cache.pin("quit");
+        cache.unpin("quit");
+
+        assertTrue(cache.evict("quit"));
+        assertNull(cache.peek("quit"));
+    }
+
+    @Test
+    void removeDropsPinnedEntriesButKeepsThePin() {
+        BoundedCache<String> cache = new BoundedCache<>(10, 0, TimeUnit.SECONDS);
+        cache.pin("online");
+        cache.put("online", "old");
+        cache.remove("online");
+        assertNull(cache.peek("online"));
+
+        cache.put("online", "new");
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value");
+        }
+        assertEquals("new", cache.peek("online"));
+    }
+
+    @Test
+    void idleEntriesExpire() throws InterruptedException {
+        BoundedCache<String> cache = new BoundedCache<>(100, 50, TimeUnit.MILLISECONDS);
+        cache.put("idle", "value");
+        cache.pin("online");
+        cache.put("online", "profile");
+
+        Thread.sleep(150);
+
+        assertNull(cache.get("idle"));
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals("profile", cache.get("online"));
+    }
+
+    @Test
+    void accessKeepsEntriesFromExpiring() throws InterruptedException {
+        BoundedCache<String> cache = new BoundedCache<>(100, 200, TimeUnit.MILLISECONDS);
+        cache.put("used", "value");
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(50);
+            assertEquals("value", cache.get("used"));
+        }
+    }
+
+    @Test
+    void reportsEvictedAndExpiredKeysButNotRemovedOnes() throws InterruptedException {
+        BoundedCache<String> cache = new BoundedCache<>(10, 50, TimeUnit.MILLISECONDS);
+        List<String> dropped = new ArrayList<>();
+        cache.setEvictionListener(dropped::add);
+
+        cache.put("removed", "value");
+        cache.remove("removed");
+        cache.put("evicted", "value");
+        cache.evict("evicted");
+        assertTrue(dropped.isEmpty());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value");
+        }
+        assertEquals(90, dropped.size());
+
+        Thread.sleep(100);
+        cache.put("fresh", "value");
+        assertEquals(100, dropped.size());
+    }
+
+    @Test
+    void zeroMaximumSizeKeepsOnlyPinnedEntries() {
+        BoundedCache<String> cache = new BoundedCache<>(0, 0, TimeUnit.SECONDS);
+        cache.pin("online");
+        cache.put("online", "profile");
+        cache.put("offline", "profile");
+
+        assertEquals("profile", cache.peek("online"));
+        assertNull(cache.peek("offline"));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(-1, 0, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(10, -1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        BoundedCache<String> cache = new BoundedCache<>(10, 0, TimeUnit.SECONDS);
+        cache.put("key", "value");
+        cache.get("key");
+        cache.get("missing");
+        cache.peek("key");
+
+        assertEquals(1, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+    }
+}
@@ -0,0 +1,53 @@
+package gg.supervisor.core.repository.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("key");
+        }
+        assertEquals(5, sketch.frequency("key"));
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("key");
+        }
+        assertEquals(15, sketch.frequency("key"));
+    }
+
+    @Test
+    void oneOffKeysDoNotSaturateTheCounters() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 900; i++) {
+            sketch.increment("cold" + i);
+        }
+
+        int total = 0;
+        for (int i = 0; i < 1_000; i++) {
+            total += sketch.frequency("unseen" + i);
+        }
+        assertTrue(total / 1_000.0 < 2, "Unseen keys are estimated at " + total / 1_000.0 + " on average");
+    }
+
+    @Test
+    void halvesEveryCounterAfterTenAdditionsPerEntry() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment("popular");
+        }
+
+        // Other keys may collide with it, so remember the estimate right before the reset
+        int before = sketch.frequency("popular");
+        for (int i = 0; i < 1_000 && sketch.frequency("popular") >= before; i++) {
+            before = sketch.frequency("popular");
+            sketch.increment("other" + i);
+        }
+        assertEquals(before / 2, sketch.frequency("popular"));
+    }
+}
@@ -0,0 +1,243 @@
+package gg.supervisor.core.repository.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindStoreTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private final RecordingStore delegate = new RecordingStore();
+    private WriteBehindStore<String> store;
+
+    @AfterEach
+    void close() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void writesOnlyTheLatestChangeOfAKey() {
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        for (int i = 0; i < 100; i++) {
+            store.save("key", "value" + i);
+        }
+        store.flush();
+
+        assertEquals(List.of(Map.of("key", "value99")), delegate.batches);
+        assertEquals(0.99, store.getCoalescingRate(), 0.001);
+        assertEquals(0, store.getPendingCount());
+    }
+
+    @Test
+    void readsSeeBufferedChanges() {
+        delegate.data.put("stored", "old");
+        delegate.data.put("removed", "old");
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+
+        store.save("stored", "new");
+        store.save("added", "new");
+        store.delete("removed");
+
+        assertEquals("new", store.get("stored"));
+        assertNull(store.get("removed"));
+        assertFalse(store.containsKey("removed"));
+        assertEquals(Set.of("stored", "added"), Set.copyOf(store.keys()));
+        assertEquals(Map.of("stored", "new", "added", "new"), store.values());
+        assertEquals(2, store.count());
+        assertTrue(delegate.batches.isEmpty());
+    }
+
+    @Test
+    void aDeleteAfterASaveIsWrittenAsADelete() {
+        delegate.data.put("key", "old");
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        store.save("key", "new");
+        store.delete("key");
+        store.flush();
+
+        assertTrue(delegate.batches.isEmpty());
+        assertEquals(List.of("key"), delegate.deleted);
+        assertFalse(delegate.data.containsKey("key"));
+    }
+
+    @Test
+    void keepsAKeySavedAgainWhileItIsWritten() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        delegate.beforeWrite = () -> {
+            writing.countDown();
+            await(resume);
+        };
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        store.save("key", "value");
+
+        Thread flush = new Thread(store::flush);
+        flush.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        store.save("key", "value"); // The same instance, saved again after a change
+        delegate.beforeWrite = null;
+        resume.countDown();
+        flush.join();
+
+        assertEquals(1, store.getPendingCount());
+        store.flush();
+        assertEquals(0, store.getPendingCount());
+        assertEquals(2, delegate.batches.size());
+    }
+
+    @Test
+    void aFailedWriteKeepsTheChangesBuffered() {
+        delegate.beforeWrite = () -> {
+            throw new IllegalStateException("Disk full");
+        };
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        store.save("key", "value");
+
+        assertThrows(IllegalStateException.class, store::flush);
+        assertEquals(1, store.getPendingCount());
+
+        delegate.beforeWrite = null;
+        store.flush();
+        assertEquals(0, store.getPendingCount());
+        assertEquals("value", delegate.data.get("key"));
+    }
+
+    @Test
+    void flushingOneKeyLeavesTheOthersBuffered() {
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        store.save("quit", "value");
+        store.save("online", "value");
+        store.flush("quit");
+
+        assertEquals(List.of(Map.of("quit", "value")), delegate.batches);
+        assertEquals(1, store.getPendingCount());
+        assertEquals(0, delegate.flushes.get());
+    }
+
+    @Test
+    void flushAlsoFlushesTheWrappedStoreButCloseDoesNot() {
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 100, 100);
+        store.save("key", "value");
+        store.flush();
+        assertEquals(1, delegate.flushes.get());
+
+        store.save("late", "value");
+        store.close();
+        store = null;
+
+        assertEquals(1, delegate.flushes.get());
+        assertEquals("value", delegate.data.get("late"));
+        assertTrue(delegate.closed);
+    }
+
+    @Test
+    void aFullBufferIsWrittenInTheBackground() throws InterruptedException {
+        store = new WriteBehindStore<>(delegate, "test", NEVER, 5, 10);
+        for (int i = 0; i < 100; i++) {
+            store.save("key" + i, "value");
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, store.getPendingCount());
+        assertEquals(100, delegate.data.size());
+        assertFalse(delegate.writerThreads.contains(Thread.currentThread()), "A save was written on the saving thread");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An in-memory store recording every write it receives.
+     */
+    private static final class RecordingStore implements Store<String> {
+
+        private final Map<String, String> data = new ConcurrentHashMap<>();
+        private final List<Map<String, String>> batches = new ArrayList<>();
+        private final List<String> deleted = new ArrayList<>();
+        private final Set<Thread> writerThreads = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private volatile Runnable beforeWrite;
+        private volatile boolean closed;
+
+        @Override
+        public String get(String key) {
+            return data.get(key);
+        }
+
+        @Override
+        public void save(String key, String value) {
+            saveAll(Map.of(key, value));
+        }
+
+        @Override
+        public void delete(String key) {
+            deleteAll(List.of(key));
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return data.containsKey(key);
+        }
+
+        @Override
+        public Map<String, String> values() {
+            return new HashMap<>(data);
+        }
+
+        @Override
+        public synchronized void saveAll(Map<String, String> values) {
+            Runnable hook = beforeWrite;
+            if (hook != null) {
+                hook.run();
+            }
+            writerThreads.add(Thread.currentThread());
+            batches.add(Map.copyOf(values));
+            data.putAll(values);
+        }
+
+        @Override
+        public synchronized void deleteAll(Collection<String> keys) {
+            writerThreads.add(Thread.currentThread());
+            deleted.addAll(keys);
+            keys.forEach(data::remove);
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
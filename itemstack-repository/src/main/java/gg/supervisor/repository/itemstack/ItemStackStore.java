@@ -1,5 +1,6 @@
 package gg.supervisor.repository.itemstack;
 
+import com.google.gson.Gson;
 import gg.supervisor.core.loader.SupervisorLoader;
 import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
@@ -16,8 +17,16 @@ public class ItemStackStore<T> implements ItemStore<T> {
 
     private final NamespacedKey namespacedKey;
 
+    // Serializer for the repository's profile; compact keeps the item data small
+    private final Gson gson;
+
     public ItemStackStore(Class<T> entityType, Plugin plugin) {
+        this(entityType, plugin, SupervisorLoader.STORAGE_GSON);
+    }
+
+    public ItemStackStore(Class<T> entityType, Plugin plugin, Gson gson) {
         this.entityType = entityType;
+        this.gson = gson;
         this.namespacedKey = new NamespacedKey(plugin, "itemstore_" + entityType.getSimpleName().toLowerCase());
     }
 
@@ -54,7 +63,7 @@ public class ItemStackStore<T> implements ItemStore<T> {
         final PersistentDataContainer container = itemMeta.getPersistentDataContainer();
         if (container.has(namespacedKey, PersistentDataType.STRING)) {
             final String json = container.get(namespacedKey, PersistentDataType.STRING);
-            return SupervisorLoader.GSON.fromJson(json, entityType);
+            return gson.fromJson(json, entityType);
         }
         return null;
     }
@@ -65,7 +74,7 @@ public class ItemStackStore<T> implements ItemStore<T> {
         if (!key.hasItemMeta()) return;
         final ItemMeta itemMeta = key.getItemMeta();
         final PersistentDataContainer container = itemMeta.getPersistentDataContainer();
-        container.set(namespacedKey, PersistentDataType.STRING, SupervisorLoader.GSON.toJson(value));
+        container.set(namespacedKey, PersistentDataType.STRING, gson.toJson(value));
         key.setItemMeta(itemMeta);
     }
 
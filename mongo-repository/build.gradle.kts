@@ -14,6 +14,15 @@ dependencies {
     compileOnly(project(":configuration"))
     compileOnly(project(":yaml-configuration"))
     implementation("org.mongodb:mongodb-driver-sync:4.7.0")
+
+    testImplementation(project(":core"))
+    testImplementation("com.google.code.gson:gson:2.10.1")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.shadowJar {
@@ -0,0 +1,292 @@
+package gg.supervisor.repository.mongo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import org.bson.BsonWriter;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * A Gson {@link JsonWriter} that writes straight into a {@link BsonWriter}, so every registered type adapter
+ * serializes to BSON without producing JSON text.
+ *
+ * <p>Whole numbers that fit into 32 bits are written as {@code int32}, larger ones as {@code int64}, which is
+ * what parsing the same JSON into a {@code Document} produced. Names followed by {@code null} are dropped
+ * unless the {@code Gson} instance serializes nulls, like {@link JsonWriter} does. Top-level fields named as
+ * date fields are written as BSON dates from their epoch milliseconds.</p>
+ */
+final class BsonJsonWriter extends JsonWriter {
+
+    private static final Writer UNWRITABLE = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private static final TypeAdapter<JsonElement> JSON_ELEMENT = new Gson().getAdapter(JsonElement.class);
+
+    private final BsonWriter writer;
+
+    // Written as the first field of the top-level document, or null
+    private final String id;
+
+    // Names of top-level fields holding epoch milliseconds that are written as dates
+    private final Set<String> dateFields;
+
+    private String deferredName;
+    private int depth;
+
+    // Nesting of a value that is being dropped, an entity field named _id that the key replaces
+    private boolean skipNext;
+    private int skipDepth;
+
+    /**
+     * @param writer     The BSON writer, positioned where a document may start.
+     * @param id         The {@code _id} to write first into the top-level document, or {@code null}.
+     * @param dateFields The names of top-level fields to write as dates.
+     */
+    BsonJsonWriter(BsonWriter writer, String id, Set<String> dateFields) {
+        super(UNWRITABLE);
+        this.writer = writer;
+        this.id = id;
+        this.dateFields = dateFields;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        if (skipStart()) {
+            return this;
+        }
+        writeDeferredName();
+        writer.writeStartDocument();
+        if (depth++ == 0 && id != null) {
+            writer.writeString("_id", id);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (skipEnd()) {
+            return this;
+        }
+        depth--;
+        writer.writeEndDocument();
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        if (skipStart()) {
+            return this;
+        }
+        writeDeferredName();
+        writer.writeStartArray();
+        depth++;
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        if (skipEnd()) {
+            return this;
+        }
+        depth--;
+        writer.writeEndArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (skipDepth > 0) {
+            return this;
+        }
+        if (depth == 1 && id != null && name.equals("_id")) {
+            skipNext = true; // The key is the document's _id
+            return this;
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (skipScalar()) {
+            return this;
+        }
+        writeDeferredName();
+        writer.writeString(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        JSON_ELEMENT.write(this, JsonParser.parseString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (skipScalar()) {
+            return this;
+        }
+        if (deferredName != null && !getSerializeNulls()) {
+            deferredName = null; // The field is left out, like JsonWriter does
+            return this;
+        }
+        writeDeferredName();
+        writer.writeNull();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        if (skipScalar()) {
+            return this;
+        }
+        writeDeferredName();
+        writer.writeBoolean(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        return value == null ? nullValue() : value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        return value((double) value);
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (skipScalar()) {
+            return this;
+        }
+        writeDeferredName();
+        writer.writeDouble(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        if (skipScalar()) {
+            return this;
+        }
+        if (depth == 1 && deferredName != null && dateFields.contains(deferredName)) {
+            writeDeferredName();
+            writer.writeDateTime(value);
+            return this;
+        }
+        writeDeferredName();
+        if (value == (int) value) {
+            writer.writeInt32((int) value);
+        } else {
+            writer.writeInt64(value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+
+        // BigInteger, BigDecimal and Gson's lazily parsed numbers
+        BigDecimal decimal = new BigDecimal(value.toString());
+        if (decimal.scale() <= 0) {
+            try {
+                return value(decimal.toBigIntegerExact().longValueExact());
+            } catch (ArithmeticException e) {
+                // Too large for int64, kept exactly below
+            }
+        }
+        if (skipScalar()) {
+            return this;
+        }
+        writeDeferredName();
+        try {
+            writer.writeDecimal128(new Decimal128(decimal));
+        } catch (NumberFormatException e) {
+            writer.writeDouble(decimal.doubleValue()); // Beyond the 34 digits of decimal128
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        // The BSON writer belongs to the caller
+    }
+
+    private void writeDeferredName() {
+        if (deferredName != null) {
+            writer.writeName(deferredName);
+            deferredName = null;
+        }
+    }
+
+    private boolean skipStart() {
+        if (skipDepth > 0 || skipNext) {
+            skipNext = false;
+            skipDepth++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skipEnd() {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skipScalar() {
+        if (skipDepth > 0) {
+            return true;
+        }
+        if (skipNext) {
+            skipNext = false;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,139 @@
+package gg.supervisor.repository.mongo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.Set;
+
+/**
+ * A BSON {@link Codec} for an entity class, driven by the repository's {@code Gson} instance so every
+ * registered {@code @Adapter} applies exactly as it does for JSON files.
+ *
+ * <p>Entities are written through a {@link BsonJsonWriter} into binary BSON, and read from BSON into a
+ * {@code JsonElement} tree that Gson binds to the entity. Neither direction produces JSON text or an
+ * intermediate {@code Document}. The tree is needed on reads because Gson reads map keys through internals
+ * that only its own readers support.</p>
+ *
+ * @param <T> The entity type.
+ */
+final class GsonCodec<T> implements Codec<T> {
+
+    private final Gson gson;
+    private final Class<T> entityType;
+
+    // Fields annotated with @Expires, stored as dates for their TTL index
+    private final Set<String> dateFields;
+
+    GsonCodec(Gson gson, Class<T> entityType) {
+        this.gson = gson;
+        this.entityType = entityType;
+        this.dateFields = MongoIndexes.dateFields(entityType);
+    }
+
+    /**
+     * Encodes an entity as the document stored under the given key.
+     *
+     * @return The document, {@code _id} first.
+     */
+    RawBsonDocument toDocument(String key, T value) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            write(writer, value, key);
+        }
+        return new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition());
+    }
+
+    /**
+     * @return The key of a stored document.
+     */
+    static String key(RawBsonDocument document) {
+        return document.getString("_id").getValue();
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        write(writer, value, null);
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        return gson.fromJson(readDocument(reader, true), entityType);
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return entityType;
+    }
+
+    private void write(BsonWriter writer, T value, String id) {
+        // Configures nulls and leniency from the Gson instance, as for JSON files
+        gson.toJson(value, entityType, new BsonJsonWriter(writer, id, dateFields));
+    }
+
+    private static JsonObject readDocument(BsonReader reader, boolean skipId) {
+        JsonObject object = new JsonObject();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (skipId && name.equals("_id")) {
+                reader.skipValue(); // The key, not a field of the entity
+                continue;
+            }
+            object.add(name, readValue(reader));
+        }
+        reader.readEndDocument();
+        return object;
+    }
+
+    private static JsonElement readValue(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT:
+                return readDocument(reader, false);
+            case ARRAY:
+                JsonArray array = new JsonArray();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    array.add(readValue(reader));
+                }
+                reader.readEndArray();
+                return array;
+            case STRING:
+                return new JsonPrimitive(reader.readString());
+            case SYMBOL:
+                return new JsonPrimitive(reader.readSymbol());
+            case INT32:
+                return new JsonPrimitive(reader.readInt32());
+            case INT64:
+                return new JsonPrimitive(reader.readInt64());
+            case DOUBLE:
+                return new JsonPrimitive(reader.readDouble());
+            case DECIMAL128:
+                return new JsonPrimitive(reader.readDecimal128().bigDecimalValue());
+            case BOOLEAN:
+                return new JsonPrimitive(reader.readBoolean());
+            case OBJECT_ID:
+                return new JsonPrimitive(reader.readObjectId().toHexString());
+            case DATE_TIME:
+                return new JsonPrimitive(reader.readDateTime());
+            case NULL:
+                reader.readNull();
+                return JsonNull.INSTANCE;
+            default:
+                reader.skipValue(); // Binary, regular expressions and the like have no JSON form
+                return JsonNull.INSTANCE;
+        }
+    }
+}
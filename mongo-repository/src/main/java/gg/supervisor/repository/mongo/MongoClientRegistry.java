@@ -0,0 +1,195 @@
+package gg.supervisor.repository.mongo;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares one {@link MongoClient} per {@code mongoUri} between all Mongo stores.
+ *
+ * <p>Every client owns a connection pool per server, a monitor thread per server and their sockets, so a
+ * client per repository multiplies all of them by the number of repositories. Stores {@link #acquire}
+ * the client when they are created and {@link #release} it when they are closed; the client is closed once
+ * the last store using it released it.</p>
+ *
+ * <p>The client is configured from the {@link MongoConfig} of the store that created it. Options given in
+ * {@code mongoUri}, such as {@code ?maxPoolSize=50}, take precedence over the fields of the config.</p>
+ */
+public final class MongoClientRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoClientRegistry.class.getName());
+
+    // Clients by URI. Guarded by the class
+    private static final Map<String, SharedClient> CLIENTS = new HashMap<>();
+
+    private MongoClientRegistry() {
+    }
+
+    /**
+     * Returns the client for the config's URI, creating it on first use. Every call must be matched by a
+     * call to {@link #release(MongoClient)}.
+     *
+     * @param mongoConfig The configuration of the store.
+     * @return The shared client.
+     */
+    public static synchronized MongoClient acquire(MongoConfig mongoConfig) {
+        SharedClient shared = CLIENTS.computeIfAbsent(mongoConfig.mongoUri, uri -> new SharedClient(mongoConfig));
+        shared.references++;
+        return shared.client;
+    }
+
+    /**
+     * Releases a client obtained from {@link #acquire(MongoConfig)}, closing it if no other store uses it.
+     *
+     * @param client The shared client.
+     */
+    public static synchronized void release(MongoClient client) {
+        for (Map.Entry<String, SharedClient> entry : CLIENTS.entrySet()) {
+            SharedClient shared = entry.getValue();
+            if (shared.client != client) {
+                continue;
+            }
+            if (--shared.references == 0) {
+                CLIENTS.remove(entry.getKey());
+                LOGGER.log(Level.INFO, "Mongo pool of {0}: {1}", new Object[]{shared.hosts, shared.pool.stats(shared.maxPoolSize)});
+                client.close();
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Client was not acquired from the registry, or released too often");
+    }
+
+    /**
+     * @return The pool statistics of every open client, by the hosts it connects to.
+     */
+    public static synchronized Map<String, MongoPoolStats> stats() {
+        Map<String, MongoPoolStats> stats = new LinkedHashMap<>();
+        CLIENTS.values().forEach(shared -> stats.put(shared.hosts, shared.pool.stats(shared.maxPoolSize)));
+        return stats;
+    }
+
+    private static MongoClientSettings settings(MongoConfig mongoConfig, ConnectionPoolListener listener) {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : mongoConfig.compressors) {
+            switch (name.toLowerCase()) {
+                case "zstd":
+                    compressors.add(MongoCompressor.createZstdCompressor());
+                    break;
+                case "snappy":
+                    compressors.add(MongoCompressor.createSnappyCompressor());
+                    break;
+                case "zlib":
+                    compressors.add(MongoCompressor.createZlibCompressor());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown Mongo compressor: " + name);
+            }
+        }
+
+        return MongoClientSettings.builder()
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(mongoConfig.maxPoolSize)
+                        .minSize(mongoConfig.minPoolSize)
+                        .maxConnecting(mongoConfig.maxConnecting)
+                        .maxWaitTime(mongoConfig.maxWaitTimeMillis, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(mongoConfig.maxConnectionIdleTimeMillis, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(listener))
+                .compressorList(compressors)
+                // Applied last, so options in the URI win over the config
+                .applyConnectionString(new ConnectionString(mongoConfig.mongoUri))
+                .build();
+    }
+
+    private static final class SharedClient {
+
+        private final PoolMetrics pool = new PoolMetrics();
+        private final MongoClient client;
+        private final int maxPoolSize;
+
+        // Never contains the credentials of the URI, so it can be logged
+        private final String hosts;
+
+        private int references;
+
+        private SharedClient(MongoConfig mongoConfig) {
+            MongoClientSettings settings = settings(mongoConfig, pool);
+            this.maxPoolSize = settings.getConnectionPoolSettings().getMaxSize();
+            this.client = MongoClients.create(settings);
+            this.hosts = String.join(",", new ConnectionString(mongoConfig.mongoUri).getHosts());
+        }
+    }
+
+    /**
+     * Counts connections and checkouts from the driver's pool events, which are sent on the threads that
+     * use the pool.
+     */
+    private static final class PoolMetrics implements ConnectionPoolListener {
+
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger inUse = new AtomicInteger();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder checkouts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        @Override
+        public void connectionCreated(ConnectionCreatedEvent event) {
+            open.incrementAndGet();
+        }
+
+        @Override
+        public void connectionClosed(ConnectionClosedEvent event) {
+            open.decrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+            waiting.incrementAndGet();
+        }
+
+        @Override
+        public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+            waiting.decrementAndGet();
+            inUse.incrementAndGet();
+            checkouts.increment();
+        }
+
+        @Override
+        public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+            waiting.decrementAndGet();
+            failures.increment();
+            if (event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT) {
+                timeouts.increment();
+            }
+        }
+
+        @Override
+        public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+            inUse.decrementAndGet();
+        }
+
+        private MongoPoolStats stats(int maxSize) {
+            return new MongoPoolStats(maxSize, open.get(), inUse.get(), waiting.get(), checkouts.sum(), failures.sum(), timeouts.sum());
+        }
+    }
+}
@@ -4,7 +4,9 @@ package gg.supervisor.repository.mongo;
 import gg.supervisor.configuration.yaml.YamlConfigService;
 import gg.supervisor.core.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration(fileName = "mongo.yml", service = YamlConfigService.class)
@@ -12,6 +14,51 @@ public class MongoConfig {
 
     public String mongoUri = "mongodb://localhost:27017";
     public String database = "admin";
+
+    // Collection names by repository or entity class name, overriding the repository's own name
     public Map<String, String> collectionTypes = new HashMap<>();
 
+    // Documents fetched per round trip when a repository is streamed, 0 for the server default
+    public int cursorBatchSize = 1000;
+
+    // Last written documents remembered per store to send partial updates, 0 to always replace whole documents.
+    // Each one is kept in memory at its full size, 1000 profiles of 50 KB take 50 MB per store. Player stores
+    // only remember the profiles in their cache
+    public int partialUpdateCacheSize = 1_000;
+
+    // Connection pool of the client shared by every repository with this mongoUri, options in the URI take precedence
+    public int maxPoolSize = 100;
+    public int minPoolSize = 0;
+
+    // Connections being established at once, further checkouts queue behind them
+    public int maxConnecting = 2;
+
+    // Time an operation waits in the queue for a free connection before it fails
+    public long maxWaitTimeMillis = 120_000;
+
+    // Idle connections are closed after this time, 0 keeps them open
+    public long maxConnectionIdleTimeMillis = 0;
+
+    // Wire compression in order of preference: zstd, snappy and zlib; zstd and snappy need their libraries at runtime
+    public List<String> compressors = new ArrayList<>();
+
+    /**
+     * Resolves the collection of a repository: the name mapped in {@link #collectionTypes} to the repository,
+     * else the one mapped to the entity class, else the repository's simple class name, like the file names of
+     * JSON repositories.
+     *
+     * @param repositoryName The simple class name of the repository, or {@code null} if it is not known.
+     * @param entityType     The entity class, named after if the repository is not known.
+     * @return The collection name.
+     */
+    String collectionName(String repositoryName, Class<?> entityType) {
+        String name = repositoryName != null ? collectionTypes.get(repositoryName) : null;
+        if (name == null) {
+            name = collectionTypes.get(entityType.getSimpleName());
+        }
+        if (name == null) {
+            name = repositoryName != null ? repositoryName : entityType.getSimpleName();
+        }
+        return name;
+    }
 }
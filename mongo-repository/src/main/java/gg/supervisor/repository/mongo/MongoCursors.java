@@ -0,0 +1,32 @@
+package gg.supervisor.repository.mongo;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes MongoDB cursors as streams for {@link gg.supervisor.core.repository.store.Store#stream()}.
+ */
+final class MongoCursors {
+
+    private MongoCursors() {
+    }
+
+    /**
+     * Opens a cursor and wraps it in a lazy stream. Documents are fetched from the server one batch at a
+     * time, and closing the stream closes the cursor, also when it was not read to the end.
+     *
+     * @param find      The query to run.
+     * @param batchSize The number of documents per batch, {@code 0} or less for the server default.
+     * @return A sequential stream of the documents.
+     */
+    static <D> Stream<D> stream(FindIterable<D> find, int batchSize) {
+        MongoCursor<D> cursor = (batchSize > 0 ? find.batchSize(batchSize) : find).cursor();
+        Spliterator<D> spliterator = Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+}
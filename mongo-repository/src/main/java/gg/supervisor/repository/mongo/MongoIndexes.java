@@ -0,0 +1,156 @@
+package gg.supervisor.repository.mongo;
+
+import com.google.gson.annotations.SerializedName;
+import com.mongodb.MongoException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import gg.supervisor.core.annotation.Expires;
+import gg.supervisor.core.annotation.Indexed;
+import gg.supervisor.core.annotation.Unique;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.mongodb.client.model.Indexes.ascending;
+import static com.mongodb.client.model.Indexes.descending;
+
+/**
+ * Creates the indexes declared with {@link Indexed}, {@link Unique} and {@link Expires} on the fields of an
+ * entity class.
+ *
+ * <p>Indexes are created in the background with a single {@code createIndexes} command per collection, so
+ * creating a store never waits for the server. If no server is available, that one command fails after the
+ * server selection timeout and is logged; the indexes are created on the next start. Until they exist,
+ * queries scan the collection and {@link Unique} is not enforced.</p>
+ */
+final class MongoIndexes {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoIndexes.class.getName());
+
+    // Builds the indexes of every store one collection after another, off the thread creating the store
+    private static final Executor INDEX_BUILDS = createIndexExecutor();
+
+    private MongoIndexes() {
+    }
+
+    /**
+     * Creates the declared indexes that do not exist yet, in the background. An index that cannot be created,
+     * because of duplicate values or an existing index with other options, is logged and skipped.
+     *
+     * @param collection The collection of the entities.
+     * @param entityType The entity class.
+     */
+    static void ensure(MongoCollection<?> collection, Class<?> entityType) {
+        List<IndexModel> indexes = indexes(entityType);
+        if (!indexes.isEmpty()) {
+            INDEX_BUILDS.execute(() -> create(collection, indexes));
+        }
+    }
+
+    private static List<IndexModel> indexes(Class<?> entityType) {
+        List<IndexModel> indexes = new ArrayList<>();
+        for (Field field : fields(entityType)) {
+            String name = serializedName(field);
+            Bson keys;
+            IndexOptions options = new IndexOptions();
+
+            // A field has one index, so the annotation with the strongest guarantee wins
+            Expires expires = field.getAnnotation(Expires.class);
+            Indexed indexed = field.getAnnotation(Indexed.class);
+            if (expires != null) {
+                keys = ascending(name);
+                options.expireAfter(expires.afterSeconds(), TimeUnit.SECONDS);
+            } else if (field.isAnnotationPresent(Unique.class)) {
+                keys = ascending(name);
+                options.unique(true).sparse(true); // Entities without a value do not collide
+            } else if (indexed != null) {
+                keys = indexed.descending() ? descending(name) : ascending(name);
+            } else {
+                continue;
+            }
+            indexes.add(new IndexModel(keys, options));
+        }
+        return indexes;
+    }
+
+    private static void create(MongoCollection<?> collection, List<IndexModel> indexes) {
+        try {
+            collection.createIndexes(indexes); // One command, so one server selection
+            return;
+        } catch (MongoTimeoutException e) {
+            LOGGER.log(Level.WARNING, "Could not create the indexes of " + collection.getNamespace() + ", no server is available", e);
+            return;
+        } catch (MongoException e) {
+            // The command creates all of its indexes or none, find the ones that fail below
+        }
+
+        for (IndexModel index : indexes) {
+            try {
+                collection.createIndex(index.getKeys(), index.getOptions());
+            } catch (MongoTimeoutException e) {
+                LOGGER.log(Level.WARNING, "Could not create the indexes of " + collection.getNamespace() + ", no server is available", e);
+                return;
+            } catch (MongoException e) {
+                LOGGER.log(Level.WARNING, "Could not create index " + index.getKeys() + " on " + collection.getNamespace(), e);
+            }
+        }
+    }
+
+    /**
+     * @return The serialized names of the fields annotated with {@link Expires}, which are stored as dates.
+     */
+    static Set<String> dateFields(Class<?> entityType) {
+        Set<String> names = new HashSet<>();
+        for (Field field : fields(entityType)) {
+            if (field.isAnnotationPresent(Expires.class)) {
+                if (field.getType() != long.class && field.getType() != Long.class) {
+                    throw new IllegalArgumentException("@Expires field " + entityType.getSimpleName() + "." + field.getName() + " must be a long");
+                }
+                names.add(serializedName(field));
+            }
+        }
+        return names;
+    }
+
+    private static List<Field> fields(Class<?> entityType) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = entityType; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static String serializedName(Field field) {
+        SerializedName serialized = field.getAnnotation(SerializedName.class);
+        return serialized != null ? serialized.value() : field.getName();
+    }
+
+    private static Executor createIndexExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Supervisor Mongo Indexes");
+            thread.setDaemon(true);
+            // The driver resolves classes through the context class loader, keep the plugin's
+            thread.setContextClassLoader(MongoIndexes.class.getClassLoader());
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
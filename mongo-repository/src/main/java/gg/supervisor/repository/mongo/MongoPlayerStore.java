@@ -1,42 +1,89 @@
 package gg.supervisor.repository.mongo;
 
+import com.google.gson.Gson;
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.ReplaceOptions;
 import gg.supervisor.core.loader.SupervisorLoader;
+import gg.supervisor.core.repository.cache.CacheStats;
+import gg.supervisor.core.repository.cache.EntityCache;
+import gg.supervisor.core.repository.query.Query;
+import gg.supervisor.core.repository.store.ChangeTracker;
+import gg.supervisor.core.repository.store.SaveStats;
 import gg.supervisor.core.repository.store.Store;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * The {@code MongoPlayerStore} class provides a storage mechanism for managing individual player data in MongoDB.
  * This store is designed for systems where each player has their own document, allowing easy per-player data management.
+ * The collection is named after the repository, and indexes declared on the profile's fields are created when the
+ * store is constructed, see {@link gg.supervisor.core.annotation.Indexed}.
  *
  * <p>This implementation utilizes MongoDB as the storage system to persist player data,
- * coupled with an in-memory cache to provide faster access to frequently used data.</p>
+ * coupled with an in-memory cache to provide faster access to frequently used data. The cache is bounded and
+ * keeps the profiles that are used most, see {@link gg.supervisor.core.annotation.Cache}; profiles of online
+ * players are pinned. Profiles evicted from the cache are not written back, so changes to the profile of an
+ * offline player must be saved.</p>
+ *
+ * <p>Profiles are encoded to and decoded from BSON directly by the repository's {@code Gson} instance, see
+ * {@link GsonCodec}. A profile is only sent to MongoDB if its encoded form changed since it was last written,
+ * so autosaves of idle players cost no round trip, see {@link ChangeTracker}. A changed profile only sends
+ * the fields that changed, see {@link PersistedDocuments}.</p>
  *
  * @param <T> The type of player data being managed by the {@code MongoPlayerStore}.
  */
 public class MongoPlayerStore<T> implements Store<T>, Closeable {
 
+    private static final Logger LOGGER = Logger.getLogger(MongoPlayerStore.class.getName());
+
+    // Shared with every store of the same mongoUri, see MongoClientRegistry
     private final MongoClient client;
+    private final AtomicBoolean closed = new AtomicBoolean();
     // MongoDB collection where player data is stored
     private final MongoCollection<Document> collection;
 
+    // The same collection read and written as binary documents, which the codec converts
+    private final MongoCollection<RawBsonDocument> documents;
+
     // Type of the player data entity
     private final Class<T> entityType;
 
-    // In-memory cache for faster data retrieval
-    private final Map<String, T> cache;
+    // Converts profiles to BSON with the repository's serializer
+    private final GsonCodec<T> codec;
+
+    // Documents fetched per round trip by stream()
+    private final int batchSize;
+
+    // In-memory cache for faster data retrieval, evicting profiles that are rarely used
+    private final EntityCache<T> cache;
+
+    // Hashes of the profiles as last written, to skip saves of unchanged profiles
+    private final ChangeTracker changes = new ChangeTracker();
+
+    // Documents as last loaded or written, to send partial updates
+    private final PersistedDocuments persisted;
 
     /**
      * Constructs a new {@code MongoPlayerStore} for managing player data.
@@ -44,11 +91,47 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
      * @param entityType The class type of the player data entities.
      */
     public MongoPlayerStore(MongoConfig mongoConfig, Class<T> entityType) {
-        this.client = MongoClients.create(mongoConfig.mongoUri);
+        this(mongoConfig, entityType, SupervisorLoader.STORAGE_GSON);
+    }
+
+    public MongoPlayerStore(MongoConfig mongoConfig, Class<T> entityType, Gson gson) {
+        this(mongoConfig, entityType, gson, EntityCache.create(null));
+    }
+
+    /**
+     * Constructs a new {@code MongoPlayerStore} that caches profiles in the given cache.
+     *
+     * @param entityType The class type of the player data entities.
+     * @param cache      The profile cache, see {@link EntityCache#create}.
+     */
+    public MongoPlayerStore(MongoConfig mongoConfig, Class<T> entityType, Gson gson, EntityCache<T> cache) {
+        this(mongoConfig, entityType, gson, cache, null);
+    }
+
+    /**
+     * Constructs a new {@code MongoPlayerStore} for the profiles of a repository.
+     *
+     * @param entityType     The class type of the player data entities.
+     * @param cache          The profile cache, see {@link EntityCache#create}.
+     * @param repositoryName The simple class name of the repository, which names the collection unless
+     *                       {@code collectionTypes} maps it, or {@code null} to name it after the entity.
+     */
+    public MongoPlayerStore(MongoConfig mongoConfig, Class<T> entityType, Gson gson, EntityCache<T> cache, String repositoryName) {
+        this.codec = new GsonCodec<>(gson, entityType);
+        this.batchSize = mongoConfig.cursorBatchSize;
+        this.persisted = new PersistedDocuments(mongoConfig.partialUpdateCacheSize);
+        this.client = MongoClientRegistry.acquire(mongoConfig);
         MongoDatabase database = client.getDatabase(mongoConfig.database);
-        this.collection = database.getCollection(mongoConfig.collectionTypes.getOrDefault(getClass().getSimpleName(), getClass().getSimpleName()));
+        this.collection = database.getCollection(mongoConfig.collectionName(repositoryName, entityType));
+        this.documents = collection.withDocumentClass(RawBsonDocument.class);
         this.entityType = entityType;
-        this.cache = new ConcurrentHashMap<>();
+        this.cache = cache;
+        cache.setEvictionListener(key -> {
+            // Evicted profiles are read from storage again on their next use
+            changes.forget(key);
+            persisted.forget(key);
+        });
+        MongoIndexes.ensure(collection, entityType);
     }
 
     /**
@@ -60,22 +143,26 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
      */
     @Override
     public T get(String key) {
-        if (cache.containsKey(key)) {
-            return cache.get(key);
+        T cached = cache.get(key);
+        if (cached != null) {
+            return cached;
         }
 
-        Document doc = collection.find(eq("_id", key)).first();
+        RawBsonDocument doc = documents.find(eq("_id", key)).first();
         if (doc != null) {
-            T data = SupervisorLoader.GSON.fromJson(doc.toJson(), entityType);
-            cache.put(key, data); // Cache the loaded data
-            return data;
+            T data = doc.decode(codec);
+            changes.forget(key); // The document is the reference again, whoever wrote it
+            persisted.loaded(key, doc);
+            T existing = cache.putIfAbsent(key, data); // Cache the loaded data, unless a concurrent load did
+            return existing != null ? existing : data;
         }
         return null;
     }
 
     /**
      * Saves or updates the player data associated with the given key.
-     * The data is both saved to the in-memory cache and persisted to MongoDB.
+     * The data is both saved to the in-memory cache and persisted to MongoDB, unless it is unchanged
+     * since it was last written.
      *
      * @param key The unique key for the player data (typically a UUID).
      * @param value The player data to save.
@@ -83,9 +170,14 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
     @Override
     public void save(String key, T value) {
         cache.put(key, value); // Save to cache
-        Document doc = Document.parse(SupervisorLoader.GSON.toJson(value));
-        doc.put("_id", key);
-        collection.replaceOne(eq("_id", key), doc, new ReplaceOptions().upsert(true)); // Upsert to MongoDB
+        RawBsonDocument document = codec.toDocument(key, value);
+        long hash = hash(document);
+        if (!changes.isChanged(key, hash)) {
+            return; // Unchanged since it was last written
+        }
+
+        persisted.save(documents, key, document); // Upsert to MongoDB, or update the changed fields
+        changes.written(key, hash);
     }
 
     /**
@@ -97,9 +189,96 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
     @Override
     public void delete(String key) {
         cache.remove(key); // Remove from cache
+        changes.forget(key);
+        persisted.forget(key);
         collection.deleteOne(eq("_id", key)); // Delete from MongoDB
     }
 
+    /**
+     * Streams every profile through a server-side cursor, one batch of {@code cursorBatchSize} documents at
+     * a time. Profiles that are already cached are returned as the cached instance; the others are not cached,
+     * so streaming the whole collection keeps memory constant. Closing the stream closes the cursor.
+     *
+     * @return A stream of the stored profiles, which must be closed after use.
+     */
+    @Override
+    public Stream<Map.Entry<String, T>> stream() {
+        return MongoCursors.stream(documents.find(), batchSize).map(doc -> {
+            String key = GsonCodec.key(doc);
+            T cached = cache.peek(key);
+            return new AbstractMap.SimpleImmutableEntry<>(key, cached != null ? cached : doc.decode(codec));
+        });
+    }
+
+    /**
+     * Saves several profiles in one unordered bulk write, e.g. the periodic autosave of online players.
+     * Unchanged profiles are left out of the write.
+     *
+     * @param values The player data to save by key.
+     */
+    @Override
+    public void saveAll(Map<String, T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        values.forEach(cache::put);
+        writeChanged(values);
+    }
+
+    /**
+     * Loads several profiles, fetching every uncached one with a single {@code $in} query.
+     *
+     * @param keys The keys to look up.
+     * @return The player data that exists, by key.
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> loaded = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            T cached = cache.get(key);
+            if (cached != null) {
+                loaded.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            documents.find(in("_id", missing)).forEach(doc -> {
+                String key = GsonCodec.key(doc);
+                T data = doc.decode(codec);
+                changes.forget(key);
+                persisted.loaded(key, doc);
+                T cached = cache.putIfAbsent(key, data); // A concurrent get may have cached it first
+                loaded.put(key, cached != null ? cached : data);
+            });
+        }
+
+        // Keep the order of the requested keys, cached or not
+        Map<String, T> found = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = loaded.get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        keys.forEach(key -> {
+            cache.remove(key);
+            changes.forget(key);
+            persisted.forget(key);
+        });
+        collection.deleteMany(in("_id", keys));
+    }
+
     /**
      * Checks whether player data exists in the store for the given key.
      *
@@ -111,7 +290,29 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
         if (cache.containsKey(key)) {
             return true;
         }
-        return collection.find(eq("_id", key)).first() != null;
+        return documentExists(key);
+    }
+
+    private boolean documentExists(String key) {
+        // Only the _id index is read, the document itself is never transferred
+        return collection.find(eq("_id", key)).projection(include("_id")).limit(1).first() != null;
+    }
+
+    /**
+     * Lists the keys with an {@code _id} projection, so no profile is transferred or deserialized.
+     *
+     * @return A new collection of every stored key.
+     */
+    @Override
+    public Collection<String> keys() {
+        List<String> keys = new ArrayList<>();
+        collection.find().projection(include("_id")).forEach(doc -> keys.add(doc.getString("_id")));
+        return keys;
+    }
+
+    @Override
+    public long count() {
+        return collection.countDocuments();
     }
 
     /**
@@ -122,12 +323,13 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
      */
     @Override
     public Map<String, T> values() {
-        Map<String, T> allValues = new ConcurrentHashMap<>(cache);
+        Map<String, T> cached = cache.asMap();
+        Map<String, T> allValues = new ConcurrentHashMap<>(cached);
 
-        collection.find().forEach(doc -> {
-            String key = doc.getString("_id");
-            if (!cache.containsKey(key)) {
-                T value = SupervisorLoader.GSON.fromJson(doc.toJson(), entityType);
+        documents.find().forEach(doc -> {
+            String key = GsonCodec.key(doc);
+            if (!cached.containsKey(key)) {
+                T value = doc.decode(codec);
                 if (value != null) {
                     allValues.put(key, value);
                 }
@@ -138,9 +340,117 @@ public class MongoPlayerStore<T> implements Store<T>, Closeable {
         return allValues;
     }
 
+    /**
+     * Runs the query as a filter in MongoDB. Profiles that are already cached are returned as the cached
+     * instance, like {@link #get(String)} does.
+     *
+     * @param query The condition on one property.
+     * @return The matching entities by key.
+     */
+    @Override
+    public Map<String, T> query(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        if (filter == null) {
+            return Store.super.query(query);
+        }
+
+        Map<String, T> matches = new LinkedHashMap<>();
+        documents.find(filter).forEach(doc -> {
+            String key = GsonCodec.key(doc);
+            T cachedValue = cache.peek(key);
+            matches.put(key, cachedValue != null ? cachedValue : doc.decode(codec));
+        });
+        return matches;
+    }
+
+    @Override
+    public long count(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        return filter != null ? collection.countDocuments(filter) : Store.super.count(query);
+    }
+
+    @Override
+    public boolean exists(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        if (filter == null) {
+            return Store.super.exists(query);
+        }
+        return collection.find(filter).projection(include("_id")).limit(1).first() != null;
+    }
+
+    /**
+     * Writes every changed cached profile back to MongoDB in a single unordered bulk write. Cached profiles
+     * are the live objects handed out by {@link #get(String)}, so they may have changed since their last save.
+     */
+    @Override
+    public void flush() {
+        writeChanged(cache.asMap());
+    }
+
+    private void writeChanged(Map<String, T> values) {
+        Map<String, RawBsonDocument> encoded = new LinkedHashMap<>();
+        Map<String, Long> hashes = new HashMap<>();
+        values.forEach((key, value) -> {
+            RawBsonDocument document = codec.toDocument(key, value);
+            long hash = hash(document);
+            if (changes.isChanged(key, hash)) {
+                encoded.put(key, document);
+                hashes.put(key, hash);
+            }
+        });
+        if (encoded.isEmpty()) {
+            return;
+        }
+
+        persisted.saveAll(documents, encoded);
+        hashes.forEach(changes::written);
+    }
+
+    private static long hash(RawBsonDocument document) {
+        ByteBuffer bytes = document.getByteBuffer().asNIO(); // A view of the document's array, nothing is copied
+        return ChangeTracker.hash(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+
+    @Override
+    public T getIfCached(String key) {
+        return cache.peek(key);
+    }
+
+    @Override
+    public void pin(String key) {
+        cache.pin(key);
+    }
+
+    @Override
+    public void unpin(String key) {
+        cache.unpin(key);
+    }
+
+    @Override
+    public void evict(String key) {
+        if (cache.evict(key)) {
+            // Loaded from MongoDB again on its next use
+            changes.forget(key);
+            persisted.forget(key);
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public SaveStats getSaveStats() {
+        return changes.stats();
+    }
+
     @Override
     public void close() {
-        if (this.client != null)
-            client.close();
+        LOGGER.log(Level.INFO, "Player cache of {0}: {1}; saves: {2}",
+                new Object[]{collection.getNamespace().getCollectionName(), cache.stats(), changes.stats()});
+        if (closed.compareAndSet(false, true)) {
+            MongoClientRegistry.release(client); // Closed once no other store uses it
+        }
     }
 }
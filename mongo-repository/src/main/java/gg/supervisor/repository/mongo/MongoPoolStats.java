@@ -0,0 +1,83 @@
+package gg.supervisor.repository.mongo;
+
+/**
+ * An immutable snapshot of the connection pool of a shared {@code MongoClient}, summed over every server
+ * it connects to, see {@link MongoClientRegistry}.
+ */
+public final class MongoPoolStats {
+
+    private final int maxSize;
+    private final int openConnections;
+    private final int connectionsInUse;
+    private final int waitingCheckouts;
+    private final long checkoutCount;
+    private final long failedCheckoutCount;
+    private final long timedOutCheckoutCount;
+
+    public MongoPoolStats(int maxSize, int openConnections, int connectionsInUse, int waitingCheckouts,
+                          long checkoutCount, long failedCheckoutCount, long timedOutCheckoutCount) {
+        this.maxSize = maxSize;
+        this.openConnections = openConnections;
+        this.connectionsInUse = connectionsInUse;
+        this.waitingCheckouts = waitingCheckouts;
+        this.checkoutCount = checkoutCount;
+        this.failedCheckoutCount = failedCheckoutCount;
+        this.timedOutCheckoutCount = timedOutCheckoutCount;
+    }
+
+    /**
+     * @return The maximum number of connections per server, {@code maxPoolSize}.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of connections that are currently open, idle or in use.
+     */
+    public int getOpenConnections() {
+        return openConnections;
+    }
+
+    /**
+     * @return The number of connections currently checked out by an operation.
+     */
+    public int getConnectionsInUse() {
+        return connectionsInUse;
+    }
+
+    /**
+     * @return The number of operations currently waiting for a connection.
+     */
+    public int getWaitingCheckouts() {
+        return waitingCheckouts;
+    }
+
+    /**
+     * @return The number of connections checked out since the client was created.
+     */
+    public long getCheckoutCount() {
+        return checkoutCount;
+    }
+
+    /**
+     * @return The number of checkouts that failed, including those that timed out.
+     */
+    public long getFailedCheckoutCount() {
+        return failedCheckoutCount;
+    }
+
+    /**
+     * @return The number of checkouts that waited longer than {@code maxWaitTimeMillis}; a steadily growing
+     * count means the pool is too small.
+     */
+    public long getTimedOutCheckoutCount() {
+        return timedOutCheckoutCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d connections in use, %d open, %d waiting; %d checkouts, %d failed, %d timed out",
+                connectionsInUse, maxSize, openConnections, waitingCheckouts, checkoutCount, failedCheckoutCount, timedOutCheckoutCount);
+    }
+}
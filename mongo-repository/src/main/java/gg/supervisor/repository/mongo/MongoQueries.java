@@ -0,0 +1,69 @@
+package gg.supervisor.repository.mongo;
+
+import gg.supervisor.core.repository.query.Query;
+import org.bson.conversions.Bson;
+
+import java.util.UUID;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.lte;
+
+/**
+ * Translates derived repository queries into MongoDB filters, so they run in the database instead of
+ * loading every document.
+ */
+final class MongoQueries {
+
+    private static final Object UNSUPPORTED = new Object();
+
+    private MongoQueries() {
+    }
+
+    /**
+     * Creates the filter for a query. Field names follow the entity's Gson names, values are converted
+     * the way Gson writes them.
+     *
+     * @param query The query.
+     * @return The filter, or {@code null} if a value has no equivalent in the stored documents and the
+     * query has to be evaluated in memory.
+     */
+    static Bson toFilter(Query query) {
+        String field = query.getProperty().getSerializedName();
+        Object value = toBson(query.getValue(0), query.getOperator().isRange());
+        if (value == UNSUPPORTED) {
+            return null;
+        }
+
+        return switch (query.getOperator()) {
+            case EQUALS -> eq(field, value);
+            case GREATER_THAN -> gt(field, value);
+            case GREATER_THAN_EQUAL -> gte(field, value);
+            case LESS_THAN -> lt(field, value);
+            case LESS_THAN_EQUAL -> lte(field, value);
+            case BETWEEN -> {
+                Object upper = toBson(query.getValue(1), true);
+                yield upper == UNSUPPORTED ? null : and(gte(field, value), lte(field, upper));
+            }
+        };
+    }
+
+    private static Object toBson(Object value, boolean range) {
+        if (value == null || value instanceof Number || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (range) {
+            return UNSUPPORTED; // Enums and UUIDs are stored as strings, which do not sort like the Java values
+        }
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        if (value instanceof UUID || value instanceof Character) {
+            return value.toString();
+        }
+        return UNSUPPORTED;
+    }
+}
@@ -1,80 +1,257 @@
 package gg.supervisor.repository.mongo;
 
+import com.google.gson.Gson;
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.ReplaceOptions;
 import gg.supervisor.core.loader.SupervisorLoader;
+import gg.supervisor.core.repository.query.Query;
 import gg.supervisor.core.repository.store.Store;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * The {@code MongoStore} class provides a storage mechanism for managing entities in MongoDB.
  * This class implements the {@code Store} interface and supports typical CRUD operations.
  *
  * <p>Using this class, you can store and retrieve entities in a key-value manner,
- * with each entity being stored as a document in a MongoDB collection.</p>
+ * with each entity being stored as a document in a MongoDB collection. The collection is named after the
+ * repository, and indexes declared on the entity's fields are created when the store is constructed, see
+ * {@link gg.supervisor.core.annotation.Indexed}.</p>
+ *
+ * <p>Entities are encoded to and decoded from BSON directly by the repository's {@code Gson} instance, see
+ * {@link GsonCodec}. Saves of an entity that was loaded or saved recently send only the changed fields, see
+ * {@link PersistedDocuments}.</p>
  *
  * @param <T> The type of entities being managed by the {@code MongoStore}.
  */
 public class MongoStore<T> implements Store<T>, Closeable {
 
+    // Shared with every store of the same mongoUri, see MongoClientRegistry
     private final MongoClient client;
+    private final AtomicBoolean closed = new AtomicBoolean();
     private final MongoCollection<Document> collection;
+
+    // The same collection read and written as binary documents, which the codec converts
+    private final MongoCollection<RawBsonDocument> documents;
     private final Class<T> entityType;
 
+    // Converts entities to BSON with the repository's serializer
+    private final GsonCodec<T> codec;
+
+    // Documents fetched per round trip by stream()
+    private final int batchSize;
+
+    // Documents as last loaded or written, to send partial updates
+    private final PersistedDocuments persisted;
+
     public MongoStore(MongoConfig mongoConfig, Class<T> entityType) {
-        this.client = MongoClients.create(mongoConfig.mongoUri);
+        this(mongoConfig, entityType, SupervisorLoader.STORAGE_GSON);
+    }
+
+    public MongoStore(MongoConfig mongoConfig, Class<T> entityType, Gson gson) {
+        this(mongoConfig, entityType, gson, null);
+    }
+
+    /**
+     * Constructs a new {@code MongoStore} for the entities of a repository.
+     *
+     * @param repositoryName The simple class name of the repository, which names the collection unless
+     *                       {@code collectionTypes} maps it, or {@code null} to name it after the entity.
+     */
+    public MongoStore(MongoConfig mongoConfig, Class<T> entityType, Gson gson, String repositoryName) {
+        this.codec = new GsonCodec<>(gson, entityType);
+        this.batchSize = mongoConfig.cursorBatchSize;
+        this.persisted = new PersistedDocuments(mongoConfig.partialUpdateCacheSize);
+        this.client = MongoClientRegistry.acquire(mongoConfig);
         MongoDatabase database = client.getDatabase(mongoConfig.database);
-        this.collection = database.getCollection(mongoConfig.collectionTypes.getOrDefault(getClass().getSimpleName(), getClass().getSimpleName()));
+        this.collection = database.getCollection(mongoConfig.collectionName(repositoryName, entityType));
+        this.documents = collection.withDocumentClass(RawBsonDocument.class);
         this.entityType = entityType;
+        MongoIndexes.ensure(collection, entityType);
     }
 
     @Override
     public T get(String key) {
-        Document doc = collection.find(eq("_id", key)).first();
-        return doc != null ? SupervisorLoader.GSON.fromJson(doc.toJson(), entityType) : null;
+        RawBsonDocument doc = documents.find(eq("_id", key)).first();
+        if (doc == null) {
+            return null;
+        }
+        persisted.loaded(key, doc);
+        return doc.decode(codec);
     }
 
     @Override
     public void save(String key, T value) {
-        Document doc = Document.parse(SupervisorLoader.GSON.toJson(value));
-        doc.put("_id", key);
-        collection.replaceOne(eq("_id", key), doc, new ReplaceOptions().upsert(true));
+        persisted.save(documents, key, codec.toDocument(key, value));
     }
 
     @Override
     public void delete(String key) {
+        persisted.forget(key);
         collection.deleteOne(eq("_id", key));
     }
 
+    /**
+     * Streams the collection through a server-side cursor, one batch of {@code cursorBatchSize} documents
+     * at a time, instead of loading it into a map like {@link #values()}. Closing the stream closes the cursor.
+     *
+     * @return A stream of the stored entities, which must be closed after use.
+     */
+    @Override
+    public Stream<Map.Entry<String, T>> stream() {
+        return MongoCursors.stream(documents.find(), batchSize)
+                .map(doc -> new AbstractMap.SimpleImmutableEntry<>(GsonCodec.key(doc), doc.decode(codec)));
+    }
+
+    /**
+     * Saves several entities in one unordered bulk write instead of one round trip per entity.
+     *
+     * @param values The entities to save by key.
+     */
+    @Override
+    public void saveAll(Map<String, T> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        Map<String, RawBsonDocument> encoded = new LinkedHashMap<>();
+        values.forEach((key, value) -> encoded.put(key, codec.toDocument(key, value)));
+        persisted.saveAll(documents, encoded);
+    }
+
+    /**
+     * Loads several entities with a single {@code $in} query.
+     *
+     * @param keys The keys to look up.
+     * @return The entities that exist, by key.
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        Map<String, T> loaded = new HashMap<>();
+        documents.find(in("_id", keys)).forEach(doc -> {
+            String key = GsonCodec.key(doc);
+            persisted.loaded(key, doc);
+            loaded.put(key, doc.decode(codec));
+        });
+
+        // Keep the order of the requested keys, the cursor returns documents in any order
+        for (String key : keys) {
+            T value = loaded.get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            keys.forEach(persisted::forget);
+            collection.deleteMany(in("_id", keys));
+        }
+    }
+
     @Override
     public boolean containsKey(String key) {
-        return collection.find(eq("_id", key)).first() != null;
+        return documentExists(key);
+    }
+
+    private boolean documentExists(String key) {
+        // Only the _id index is read, the document itself is never transferred
+        return collection.find(eq("_id", key)).projection(include("_id")).limit(1).first() != null;
+    }
+
+    /**
+     * Lists the keys with an {@code _id} projection, so no entity is transferred or deserialized.
+     *
+     * @return A new collection of every stored key.
+     */
+    @Override
+    public Collection<String> keys() {
+        List<String> keys = new ArrayList<>();
+        collection.find().projection(include("_id")).forEach(doc -> keys.add(doc.getString("_id")));
+        return keys;
+    }
+
+    @Override
+    public long count() {
+        return collection.countDocuments();
     }
 
     @Override
     public Map<String, T> values() {
         Map<String, T> map = new HashMap<>();
-        collection.find().forEach(doc -> {
-            String key = doc.getString("_id");
-            T value = SupervisorLoader.GSON.fromJson(doc.toJson(), entityType);
+        documents.find().forEach(doc -> {
+            String key = GsonCodec.key(doc);
+            T value = doc.decode(codec);
             map.put(key, value);
         });
         return map;
     }
 
+    /**
+     * Runs the query as a filter in MongoDB instead of loading every document.
+     *
+     * @param query The condition on one property.
+     * @return The matching entities by key.
+     */
+    @Override
+    public Map<String, T> query(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        if (filter == null) {
+            return Store.super.query(query);
+        }
+
+        Map<String, T> matches = new LinkedHashMap<>();
+        documents.find(filter).forEach(doc -> {
+            String key = GsonCodec.key(doc);
+            matches.put(key, doc.decode(codec));
+        });
+        return matches;
+    }
+
+    @Override
+    public long count(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        return filter != null ? collection.countDocuments(filter) : Store.super.count(query);
+    }
+
+    @Override
+    public boolean exists(Query query) {
+        Bson filter = MongoQueries.toFilter(query);
+        if (filter == null) {
+            return Store.super.exists(query);
+        }
+        return collection.find(filter).projection(include("_id")).limit(1).first() != null;
+    }
+
     @Override
     public void close() {
-        if (client != null)
-            client.close();
+        if (closed.compareAndSet(false, true)) {
+            MongoClientRegistry.release(client); // Closed once no other store uses it
+        }
     }
 }
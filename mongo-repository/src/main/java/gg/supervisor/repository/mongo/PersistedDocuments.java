@@ -0,0 +1,341 @@
+package gg.supervisor.repository.mongo;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import gg.supervisor.core.repository.cache.BoundedCache;
+import gg.supervisor.core.repository.cache.EntityCache;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Remembers the document each key was last loaded or written with, so a save can send only the fields
+ * that changed instead of replacing the whole document.
+ *
+ * <p>A save is compared with the remembered document field by field, descending into embedded documents.
+ * Changed whole numbers become {@code $inc}, other changes {@code $set} and removed fields {@code $unset};
+ * arrays are always set as a whole. A full {@code replaceOne} is sent instead if no document is remembered,
+ * if the update would be larger than half of the document, or if a field name cannot be used in an update
+ * path. An unchanged document is not sent at all.</p>
+ *
+ * <p>Documents are remembered in a bounded cache of {@code partialUpdateCacheSize} entries per store, each
+ * taking its encoded size in memory; a forgotten document only costs one full replace. Stores with an entity
+ * cache also forget the documents of entities it drops. An update that finds no document, because it was
+ * deleted elsewhere, is sent again as a replace. Saves of one key are expected in order, which the
+ * repository's I/O lanes guarantee for asynchronous saves.</p>
+ *
+ * <p>An {@code $inc} adds to whatever is stored, which may differ from the remembered document if someone
+ * else changed it. A save with one therefore reads back only the incremented fields after the update, a
+ * single save in the same round trip and a bulk save with one query for the whole batch, and remembers the
+ * stored values, so the next diff never builds on a value that is not stored. Only if they cannot be read
+ * back is the key forgotten. A failed write forgets its keys as well, since it is unknown which of them were
+ * applied.</p>
+ */
+final class PersistedDocuments {
+
+    // Beyond this many changed paths the update is not worth computing and sending
+    private static final int MAX_UPDATE_PATHS = 32;
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+    private static final BsonString UNSET = new BsonString("");
+
+    // Kept in their binary form, which is as compact as a document gets
+    private final EntityCache<RawBsonDocument> documents;
+
+    /**
+     * @param maximumSize The number of documents to remember, {@code 0} or less to always replace.
+     */
+    PersistedDocuments(int maximumSize) {
+        this.documents = maximumSize > 0 ? new BoundedCache<>(maximumSize, 0, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * Remembers a document read from the collection.
+     */
+    void loaded(String key, RawBsonDocument document) {
+        if (documents != null) {
+            documents.put(key, document);
+        }
+    }
+
+    /**
+     * Forgets the key's document, for example once it is deleted.
+     */
+    void forget(String key) {
+        if (documents != null) {
+            documents.remove(key);
+        }
+    }
+
+    /**
+     * Writes one entity, as a partial update if possible.
+     *
+     * @param collection The collection to write to.
+     * @param key        The key of the entity.
+     * @param document   The encoded entity, with the key as its {@code _id}.
+     */
+    void save(MongoCollection<RawBsonDocument> collection, String key, RawBsonDocument document) {
+        BsonDocument update = update(key, document);
+        try {
+            if (update == null) {
+                collection.replaceOne(eq("_id", key), document, UPSERT);
+            } else if (update.containsKey("$inc")) {
+                Set<String> paths = update.getDocument("$inc").keySet();
+                FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                        .returnDocument(ReturnDocument.AFTER)
+                        .projection(Projections.include(new ArrayList<>(paths)));
+                RawBsonDocument stored = collection.findOneAndUpdate(eq("_id", key), update, options);
+                if (stored != null) {
+                    remember(key, document, stored, paths);
+                    return;
+                }
+                collection.replaceOne(eq("_id", key), document, UPSERT); // Deleted elsewhere, write it whole
+            } else if (!update.isEmpty() && collection.updateOne(eq("_id", key), update).getMatchedCount() == 0) {
+                collection.replaceOne(eq("_id", key), document, UPSERT);
+            }
+        } catch (RuntimeException e) {
+            forget(key);
+            throw e;
+        }
+        loaded(key, document);
+    }
+
+    /**
+     * Writes several entities in one unordered bulk write, as partial updates where possible.
+     *
+     * @param collection The collection to write to.
+     * @param values     The encoded entities by key, each with its key as its {@code _id}.
+     */
+    void saveAll(MongoCollection<RawBsonDocument> collection, Map<String, RawBsonDocument> values) {
+        List<WriteModel<RawBsonDocument>> writes = new ArrayList<>(values.size());
+        List<Map.Entry<String, RawBsonDocument>> updated = new ArrayList<>();
+        Map<String, Set<String>> incremented = new HashMap<>();
+        int replaced = 0;
+
+        for (Map.Entry<String, RawBsonDocument> entry : values.entrySet()) {
+            String key = entry.getKey();
+            RawBsonDocument document = entry.getValue();
+
+            BsonDocument update = update(key, document);
+            if (update == null) {
+                writes.add(new ReplaceOneModel<>(eq("_id", key), document, UPSERT));
+                replaced++;
+            } else if (!update.isEmpty()) {
+                writes.add(new UpdateOneModel<>(eq("_id", key), update));
+                updated.add(entry);
+                if (update.containsKey("$inc")) {
+                    incremented.put(key, update.getDocument("$inc").keySet());
+                }
+            }
+        }
+
+        if (!writes.isEmpty()) {
+            try {
+                BulkWriteResult result = collection.bulkWrite(writes, UNORDERED);
+                // A replace either matched or upserted, so the remaining matches belong to the updates
+                int updatesMatched = result.getMatchedCount() - (replaced - result.getUpserts().size());
+                if (updatesMatched < updated.size()) {
+                    // Some documents were deleted elsewhere; replacing every updated one is idempotent
+                    List<WriteModel<RawBsonDocument>> replaces = new ArrayList<>(updated.size());
+                    for (Map.Entry<String, RawBsonDocument> entry : updated) {
+                        replaces.add(new ReplaceOneModel<>(eq("_id", entry.getKey()), entry.getValue(), UPSERT));
+                    }
+                    collection.bulkWrite(replaces, UNORDERED);
+                    incremented.clear(); // Every incremented document was replaced by its local form
+                }
+            } catch (RuntimeException e) {
+                values.keySet().forEach(this::forget);
+                throw e;
+            }
+        }
+        values.forEach((key, document) -> {
+            if (!incremented.containsKey(key)) {
+                loaded(key, document);
+            }
+        });
+        if (!incremented.isEmpty()) {
+            rememberIncremented(collection, values, incremented);
+        }
+    }
+
+    /**
+     * Reads back the fields a bulk write incremented, since it returns no documents, with one query for all
+     * of them, and remembers the stored values.
+     */
+    private void rememberIncremented(MongoCollection<RawBsonDocument> collection, Map<String, RawBsonDocument> values,
+                                     Map<String, Set<String>> incremented) {
+        Set<String> paths = new TreeSet<>();
+        incremented.values().forEach(paths::addAll);
+        try {
+            collection.find(in("_id", incremented.keySet()))
+                    .projection(Projections.include(new ArrayList<>(paths)))
+                    .forEach(stored -> {
+                        String key = GsonCodec.key(stored);
+                        Set<String> keyPaths = incremented.remove(key);
+                        if (keyPaths != null) {
+                            remember(key, values.get(key), stored, keyPaths);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // The write itself succeeded, the documents are only sent whole on their next save
+        }
+        incremented.keySet().forEach(this::forget); // Not read back, deleted elsewhere in the meantime
+    }
+
+    /**
+     * Remembers a written document with its incremented fields as the server stored them.
+     *
+     * @param document The written document.
+     * @param stored   The stored document, holding at least the incremented fields.
+     * @param paths    The dotted paths of the incremented fields.
+     */
+    private void remember(String key, RawBsonDocument document, RawBsonDocument stored, Set<String> paths) {
+        BsonDocument written = document.decode(DOCUMENT_CODEC);
+        BsonDocument read = stored.decode(DOCUMENT_CODEC);
+        for (String path : paths) {
+            String[] names = path.split("\\.");
+            BsonDocument target = written;
+            BsonValue value = read;
+            for (int i = 0; i < names.length; i++) {
+                value = value != null && value.isDocument() ? value.asDocument().get(names[i]) : null;
+                if (i < names.length - 1) {
+                    BsonValue next = target.get(names[i]);
+                    target = next != null && next.isDocument() ? next.asDocument() : null;
+                    if (target == null) {
+                        break;
+                    }
+                }
+            }
+            if (value == null || target == null) {
+                forget(key); // Changed elsewhere beyond an increment, the next save replaces it
+                return;
+            }
+            target.put(names[names.length - 1], value);
+        }
+        loaded(key, new RawBsonDocument(written, DOCUMENT_CODEC));
+    }
+
+    /**
+     * @return The update turning the remembered document into the given one, an empty document if they are
+     * equal, or {@code null} if the document should be replaced.
+     */
+    BsonDocument update(String key, RawBsonDocument document) {
+        RawBsonDocument persisted = documents != null ? documents.get(key) : null;
+        if (persisted == null) {
+            return null;
+        }
+
+        BsonDocument set = new BsonDocument();
+        BsonDocument unset = new BsonDocument();
+        BsonDocument inc = new BsonDocument();
+        // Decoded once, since fields of the binary form are found by scanning it
+        if (!diff("", persisted.decode(DOCUMENT_CODEC), document.decode(DOCUMENT_CODEC), set, unset, inc)) {
+            return null;
+        }
+
+        BsonDocument update = new BsonDocument();
+        if (!set.isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.put("$unset", unset);
+        }
+        if (!inc.isEmpty()) {
+            update.put("$inc", inc);
+        }
+
+        if (set.size() + unset.size() + inc.size() > MAX_UPDATE_PATHS
+                || (!update.isEmpty() && encodedSize(update) * 2 > document.getByteBuffer().remaining())) {
+            return null;
+        }
+        return update;
+    }
+
+    private static int encodedSize(BsonDocument document) {
+        return new RawBsonDocument(document, DOCUMENT_CODEC).getByteBuffer().remaining();
+    }
+
+    /**
+     * Collects the operators turning one (embedded) document into another.
+     *
+     * @return {@code false} if a field name cannot be used as an update path.
+     */
+    private static boolean diff(String prefix, BsonDocument before, BsonDocument after, BsonDocument set, BsonDocument unset, BsonDocument inc) {
+        for (Map.Entry<String, BsonValue> entry : after.entrySet()) {
+            String name = entry.getKey();
+            if (prefix.isEmpty() && name.equals("_id")) {
+                continue;
+            }
+            if (name.isEmpty() || name.indexOf('.') >= 0 || name.startsWith("$")) {
+                return false; // Not addressable with a dotted path
+            }
+
+            String path = prefix + name;
+            BsonValue now = entry.getValue();
+            BsonValue then = before.get(name);
+            if (then == null) {
+                set.put(path, now);
+                continue;
+            }
+            if (then.equals(now)) {
+                continue;
+            }
+
+            if (then.isDocument() && now.isDocument()) {
+                if (!diff(path + ".", then.asDocument(), now.asDocument(), set, unset, inc)) {
+                    return false;
+                }
+            } else if (then.isInt32() && now.isInt32()) {
+                long delta = (long) now.asInt32().getValue() - then.asInt32().getValue();
+                if (delta == (int) delta) {
+                    inc.put(path, new BsonInt32((int) delta));
+                } else {
+                    set.put(path, now);
+                }
+            } else if (then.isInt64() && now.isInt64()) {
+                try {
+                    inc.put(path, new BsonInt64(Math.subtractExact(now.asInt64().getValue(), then.asInt64().getValue())));
+                } catch (ArithmeticException e) {
+                    set.put(path, now);
+                }
+            } else {
+                set.put(path, now);
+            }
+        }
+
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name) && !(prefix.isEmpty() && name.equals("_id"))) {
+                if (name.isEmpty() || name.indexOf('.') >= 0 || name.startsWith("$")) {
+                    return false;
+                }
+                unset.put(prefix + name, UNSET);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,243 @@
+package gg.supervisor.repository.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersistedDocumentsTest {
+
+    private final PersistedDocuments persisted = new PersistedDocuments(100);
+
+    @Test
+    void replacesDocumentsItDoesNotRemember() {
+        assertNull(persisted.update("key", document("{_id: 'key', coins: 5}")));
+    }
+
+    @Test
+    void sendsNothingForAnUnchangedDocument() {
+        persisted.loaded("key", document("{_id: 'key', name: 'Steve', coins: 5}"));
+
+        assertEquals(new BsonDocument(), persisted.update("key", document("{_id: 'key', name: 'Steve', coins: 5}")));
+    }
+
+    @Test
+    void setsChangedAndAddedFieldsAndUnsetsRemovedOnes() {
+        persisted.loaded("key", profile("key", "name: 'Steve', rank: 'member', title: 'Miner'"));
+
+        BsonDocument update = persisted.update("key", profile("key", "name: 'Steve', rank: 'vip', guild: 'Red'"));
+
+        assertEquals(BsonDocument.parse("{$set: {rank: 'vip', guild: 'Red'}, $unset: {title: ''}}"), update);
+    }
+
+    @Test
+    void incrementsChangedWholeNumbers() {
+        persisted.loaded("key", profile("key", "coins: 5, playtime: {$numberLong: '1000'}"));
+
+        BsonDocument update = persisted.update("key", profile("key", "coins: 2, playtime: {$numberLong: '1600'}"));
+
+        assertEquals(BsonDocument.parse("{$inc: {coins: -3, playtime: {$numberLong: '600'}}}"), update);
+    }
+
+    @Test
+    void setsNumbersWhoseDifferenceOverflowsOrWhoseTypeChanged() {
+        persisted.loaded("key", profile("key", "coins: -2147483648, balance: 1"));
+
+        BsonDocument update = persisted.update("key", profile("key", "coins: 2147483647, balance: 1.5"));
+
+        assertEquals(BsonDocument.parse("{$set: {coins: 2147483647, balance: 1.5}}"), update);
+    }
+
+    @Test
+    void addressesEmbeddedFieldsByPathAndSetsArraysWhole() {
+        persisted.loaded("key", profile("key", "stats: {kills: 1, deaths: 0, best: {streak: 2}}, homes: ['a']"));
+
+        BsonDocument update = persisted.update("key",
+                profile("key", "stats: {kills: 2, best: {streak: 2, weapon: 'bow'}}, homes: ['a', 'b']"));
+
+        assertEquals(BsonDocument.parse("{$set: {'stats.best.weapon': 'bow', homes: ['a', 'b']},"
+                + " $unset: {'stats.deaths': ''}, $inc: {'stats.kills': 1}}"), update);
+    }
+
+    @Test
+    void replacesWhenAFieldNameIsNoUpdatePath() {
+        persisted.loaded("key", document("{_id: 'key', homes: {}}"));
+        assertNull(persisted.update("key", document("{_id: 'key', homes: {'spawn.old': 1}}")));
+
+        persisted.loaded("key", document("{_id: 'key', homes: {'$spawn': 1}}"));
+        assertNull(persisted.update("key", document("{_id: 'key', homes: {}}")));
+    }
+
+    @Test
+    void replacesWhenTooManyFieldsChanged() {
+        StringBuilder before = new StringBuilder("{_id: 'key', padding: '" + "x".repeat(4_000) + "'");
+        StringBuilder after = new StringBuilder(before);
+        for (int i = 0; i < 33; i++) {
+            before.append(", field").append(i).append(": 'a'");
+            after.append(", field").append(i).append(": 'b'");
+        }
+        persisted.loaded("key", document(before + "}"));
+
+        assertNull(persisted.update("key", document(after + "}")));
+    }
+
+    @Test
+    void replacesWhenTheUpdateIsLargerThanHalfTheDocument() {
+        persisted.loaded("key", document("{_id: 'key', bio: 'short'}"));
+
+        assertNull(persisted.update("key", document("{_id: 'key', bio: '" + "x".repeat(1_000) + "'}")));
+    }
+
+    @Test
+    void alwaysReplacesWithoutACache() {
+        PersistedDocuments disabled = new PersistedDocuments(0);
+        disabled.loaded("key", profile("key", "coins: 5"));
+
+        assertNull(disabled.update("key", profile("key", "coins: 6")));
+    }
+
+    @Test
+    void remembersTheStoredCountersAfterAnIncrement() {
+        persisted.loaded("key", profile("key", "name: 'Steve', stats: {coins: 5}"));
+        FakeCollection fake = new FakeCollection();
+        // Another server added 10 coins in the meantime
+        fake.incrementResult = document("{_id: 'key', stats: {coins: 16}}");
+
+        persisted.save(fake.collection, "key", profile("key", "name: 'Steve', stats: {coins: 6}"));
+
+        assertEquals(BsonDocument.parse("{'stats.coins': 1}"), fake.lastProjection);
+        assertEquals(BsonDocument.parse("{$inc: {'stats.coins': 1}}"),
+                persisted.update("key", profile("key", "name: 'Steve', stats: {coins: 17}")));
+    }
+
+    @Test
+    void replacesADocumentDeletedElsewhere() {
+        persisted.loaded("key", profile("key", "coins: 5"));
+        FakeCollection fake = new FakeCollection();
+
+        persisted.save(fake.collection, "key", profile("key", "coins: 6"));
+
+        assertEquals(List.of("findOneAndUpdate", "replaceOne"), fake.calls);
+        assertEquals(new BsonDocument(), persisted.update("key", profile("key", "coins: 6")));
+    }
+
+    @Test
+    void readsBackTheIncrementedFieldsOfABulkSave() {
+        persisted.loaded("a", profile("a", "coins: 5"));
+        persisted.loaded("b", profile("b", "coins: 5, name: 'Alex'"));
+        FakeCollection fake = new FakeCollection();
+        fake.found.add(document("{_id: 'a', coins: 8}"));
+
+        Map<String, RawBsonDocument> values = new LinkedHashMap<>();
+        values.put("a", profile("a", "coins: 6"));
+        values.put("b", profile("b", "coins: 5, name: 'Sam'"));
+        persisted.saveAll(fake.collection, values);
+
+        assertEquals(List.of("bulkWrite", "find"), fake.calls);
+        assertEquals(BsonDocument.parse("{coins: 1}"), fake.lastProjection);
+        assertEquals(BsonDocument.parse("{$inc: {coins: 1}}"), persisted.update("a", profile("a", "coins: 9")));
+        assertEquals(new BsonDocument(), persisted.update("b", profile("b", "coins: 5, name: 'Sam'")));
+    }
+
+    @Test
+    void forgetsIncrementedDocumentsThatCannotBeReadBack() {
+        persisted.loaded("key", profile("key", "coins: 5"));
+        FakeCollection fake = new FakeCollection();
+        fake.findFailure = new MongoException("Timed out");
+
+        persisted.saveAll(fake.collection, Map.of("key", profile("key", "coins: 6")));
+
+        assertNull(persisted.update("key", profile("key", "coins: 6")));
+    }
+
+    @Test
+    void forgetsDocumentsOfAFailedWrite() {
+        persisted.loaded("key", profile("key", "name: 'Steve'"));
+        FakeCollection fake = new FakeCollection();
+        fake.writeFailure = new MongoException("Not primary");
+
+        assertThrows(MongoException.class, () -> persisted.save(fake.collection, "key", profile("key", "name: 'Alex'")));
+        assertNull(persisted.update("key", profile("key", "name: 'Alex'")));
+    }
+
+    /**
+     * A document with the given fields, padded like a real profile, so small updates stay below half its size.
+     */
+    private static RawBsonDocument profile(String key, String fields) {
+        return document("{_id: '" + key + "', skin: '" + "x".repeat(1_000) + "', " + fields + "}");
+    }
+
+    private static RawBsonDocument document(String json) {
+        return RawBsonDocument.parse(json);
+    }
+
+    /**
+     * Records the calls made to a collection and answers them with configured results.
+     */
+    private static final class FakeCollection {
+
+        private final List<String> calls = new ArrayList<>();
+        private final List<RawBsonDocument> found = new ArrayList<>();
+        private RawBsonDocument incrementResult;
+        private BsonDocument lastProjection;
+        private RuntimeException writeFailure;
+        private RuntimeException findFailure;
+
+        @SuppressWarnings("unchecked")
+        private final MongoCollection<RawBsonDocument> collection = (MongoCollection<RawBsonDocument>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    if (writeFailure != null) {
+                        throw writeFailure;
+                    }
+                    switch (method.getName()) {
+                        case "findOneAndUpdate":
+                            lastProjection = ((FindOneAndUpdateOptions) args[2]).getProjection().toBsonDocument();
+                            return incrementResult;
+                        case "bulkWrite":
+                            int size = ((List<?>) args[0]).size();
+                            return BulkWriteResult.acknowledged(0, size, 0, size, List.of(), List.of());
+                        case "find":
+                            return findIterable();
+                        default:
+                            return null;
+                    }
+                });
+
+        @SuppressWarnings("unchecked")
+        private FindIterable<RawBsonDocument> findIterable() {
+            return (FindIterable<RawBsonDocument>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{FindIterable.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "projection":
+                                lastProjection = ((Bson) args[0]).toBsonDocument();
+                                return proxy;
+                            case "forEach":
+                                if (findFailure != null) {
+                                    throw findFailure;
+                                }
+                                found.forEach((Consumer<? super RawBsonDocument>) args[0]);
+                                return null;
+                            default:
+                                return proxy;
+                        }
+                    });
+        }
+    }
+}
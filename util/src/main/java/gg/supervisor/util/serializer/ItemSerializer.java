@@ -1,17 +1,18 @@
 package gg.supervisor.util.serializer;
 
+import gg.supervisor.core.adapters.types.item.ItemStackCodec;
 import org.bukkit.Bukkit;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
-import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
-import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+/**
+ * Converts items and inventories to Base64 strings through {@link ItemStackCodec}, which uses Paper's
+ * native item serialization. The method names predate the codec; strings written by the earlier
+ * {@code BukkitObjectOutputStream} based implementation are still accepted by every read method.
+ */
 public class ItemSerializer {
 
     /**
@@ -41,24 +42,7 @@ public class ItemSerializer {
      * @throws IllegalStateException
      */
     public static String itemStackArrayToBase64(ItemStack[] items) throws IllegalStateException {
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            // Write the size of the inventory
-            dataOutput.writeInt(items.length);
-
-            // Save every element in the list
-            for (int i = 0; i < items.length; i++) {
-                dataOutput.writeObject(items[i]);
-            }
-
-            // Serialize that array
-            dataOutput.close();
-            return Base64Coder.encodeLines(outputStream.toByteArray());
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to save item stacks.", e);
-        }
+        return ItemStackCodec.encodeAllToString(items);
     }
 
     /**
@@ -76,24 +60,8 @@ public class ItemSerializer {
      * @throws IllegalStateException
      */
     public static String toBase64(Inventory inventory) throws IllegalStateException {
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            // Write the size of the inventory
-            dataOutput.writeInt(inventory.getSize());
-
-            // Save every element in the list
-            for (int i = 0; i < inventory.getSize(); i++) {
-                dataOutput.writeObject(inventory.getItem(i));
-            }
-
-            // Serialize that array
-            dataOutput.close();
-            return Base64Coder.encodeLines(outputStream.toByteArray());
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to save item stacks.", e);
-        }
+        // The contents array has one slot per inventory slot, so its length is the inventory size
+        return ItemStackCodec.encodeAllToString(inventory.getContents());
     }
 
     /**
@@ -111,21 +79,14 @@ public class ItemSerializer {
      * @throws IOException
      */
     public static Inventory fromBase64(String data) throws IOException {
-        try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decodeLines(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-            Inventory inventory = Bukkit.getServer().createInventory(null, dataInput.readInt());
-
-            // Read the serialized inventory
-            for (int i = 0; i < inventory.getSize(); i++) {
-                inventory.setItem(i, (ItemStack) dataInput.readObject());
-            }
+        ItemStack[] items = ItemStackCodec.decodeAllFromString(data);
+        Inventory inventory = Bukkit.getServer().createInventory(null, items.length);
 
-            dataInput.close();
-            return inventory;
-        } catch (ClassNotFoundException e) {
-            throw new IOException("Unable to decode class type.", e);
+        // Read the serialized inventory
+        for (int i = 0; i < items.length; i++) {
+            inventory.setItem(i, items[i]);
         }
+        return inventory;
     }
 
     /**
@@ -140,21 +101,7 @@ public class ItemSerializer {
      * @throws IOException
      */
     public static ItemStack[] itemStackArrayFromBase64(String data) throws IOException {
-        try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decodeLines(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-            ItemStack[] items = new ItemStack[dataInput.readInt()];
-
-            // Read the serialized inventory
-            for (int i = 0; i < items.length; i++) {
-                items[i] = (ItemStack) dataInput.readObject();
-            }
-
-            dataInput.close();
-            return items;
-        } catch (ClassNotFoundException e) {
-            throw new IOException("Unable to decode class type.", e);
-        }
+        return ItemStackCodec.decodeAllFromString(data);
     }
 
     /**
@@ -165,19 +112,7 @@ public class ItemSerializer {
      * @throws IOException
      */
     public static ItemStack itemStackFromBase64(String data) throws IOException {
-        try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decode(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-            ItemStack item;
-
-            // Read the serialized inventory
-            item = (ItemStack) dataInput.readObject();
-
-            dataInput.close();
-            return item;
-        } catch (ClassNotFoundException e) {
-            throw new IOException("Unable to decode class type.", e);
-        }
+        return ItemStackCodec.decodeFromString(data);
     }
 
     /**
@@ -188,19 +123,7 @@ public class ItemSerializer {
      * @throws IllegalStateException
      */
     public static String itemStackToBase64(ItemStack item) throws IllegalStateException {
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            // Save every element
-            dataOutput.writeObject(item);
-
-            // Serialize that array
-            dataOutput.close();
-            return new String(Base64Coder.encode(outputStream.toByteArray()));
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to save item stacks.", e);
-        }
+        return ItemStackCodec.encodeToString(item);
     }
 
 }